@@ -0,0 +1,94 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
+import org.codehaus.plexus.configuration.PlexusConfiguration;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.twdata.maven.mojoexecutor.ConfigurationTrees.Shape;
+import org.twdata.maven.mojoexecutor.MojoExecutor.Element;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversion of large configuration trees to {@link Xpp3Dom}, both from the fluent {@link Element}s and
+ * from the {@link PlexusConfiguration} handed to {@code execute-mojo}, and building them from scratch with the
+ * {@link Element}s and with the {@link ConfigurationBuilder}. The {@code Merged} benchmarks convert a
+ * {@link PlexusConfiguration} and merge the mojo defaults into it, once into a copy and once in place, as
+ * {@code execute-mojo} does. Run with {@code -prof gc} to compare allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigurationConversionBenchmark {
+    @Param({"wide", "deep", "bushy"})
+    private String shape;
+
+    private Element element;
+    private PlexusConfiguration plexusConfiguration;
+    private MojoDescriptor mojoDescriptor;
+
+    @Setup
+    public void setUp() {
+        element = ConfigurationTrees.element(Shape.valueOf(shape));
+        plexusConfiguration = ConfigurationTrees.plexusConfiguration(Shape.valueOf(shape));
+        mojoDescriptor = new StubBuildPluginManager(ConfigurationTrees.mojoConfiguration(10)).getMojoDescriptor();
+    }
+
+    @Benchmark
+    public Xpp3Dom elementToDom() {
+        return element.toDom();
+    }
+
+    @Benchmark
+    public Xpp3Dom buildWithElements() {
+        return ConfigurationTrees.element(Shape.valueOf(shape)).toDom();
+    }
+
+    @Benchmark
+    public Xpp3Dom buildWithConfigurationBuilder() {
+        return ConfigurationTrees.build(Shape.valueOf(shape));
+    }
+
+    @Benchmark
+    public Xpp3Dom plexusConfigurationToXpp3Dom() {
+        return PlexusConfigurationUtils.toXpp3Dom(plexusConfiguration);
+    }
+
+    @Benchmark
+    public Xpp3Dom plexusConfigurationMerged() {
+        return MojoExecutor.mergeDefaults(mojoDescriptor, PlexusConfigurationUtils.toXpp3Dom(plexusConfiguration));
+    }
+
+    @Benchmark
+    public Xpp3Dom plexusConfigurationMergedInPlace() {
+        return MojoExecutor.mergeDefaults(mojoDescriptor, PlexusConfigurationUtils.asXpp3Dom(plexusConfiguration));
+    }
+}
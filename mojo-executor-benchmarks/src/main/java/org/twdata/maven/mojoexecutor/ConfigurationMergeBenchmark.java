@@ -0,0 +1,77 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.twdata.maven.mojoexecutor.MojoExecutor.configuration;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.element;
+
+/**
+ * Measures the merge of the execution configuration with the defaults of the mojo descriptor. The merge is memoized
+ * per descriptor, so repeated executions only pay for matching the configuration against the cached, interned result;
+ * {@link #copyConfiguration()} measures the copy the first merge makes of the execution configuration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigurationMergeBenchmark {
+    @Param({"10", "60"})
+    private int parameters;
+
+    private MojoDescriptor mojoDescriptor;
+    private Xpp3Dom configuration;
+
+    @Setup
+    public void setUp() {
+        mojoDescriptor = new StubBuildPluginManager(ConfigurationTrees.mojoConfiguration(parameters))
+            .getMojoDescriptor();
+        configuration = configuration(
+            element("parameter0", "value0"),
+            element("parameter1", "value1"),
+            element("parameter2", element("item", "a"), element("item", "b")),
+            element("undeclared", "value")
+        );
+    }
+
+    @Benchmark
+    public Xpp3Dom copyConfiguration() {
+        return new Xpp3Dom(configuration);
+    }
+
+    @Benchmark
+    public MojoExecution mojoExecution() {
+        return MojoExecutor.mojoExecution(mojoDescriptor, null, configuration);
+    }
+}
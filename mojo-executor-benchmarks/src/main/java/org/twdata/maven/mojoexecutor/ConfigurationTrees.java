@@ -0,0 +1,124 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.codehaus.plexus.configuration.PlexusConfiguration;
+import org.codehaus.plexus.configuration.xml.XmlPlexusConfiguration;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.twdata.maven.mojoexecutor.MojoExecutor.Element;
+
+/**
+ * Builds configuration trees of the same shape as {@link Element}s, with a {@link ConfigurationBuilder} and as
+ * {@link PlexusConfiguration}s.
+ */
+final class ConfigurationTrees {
+    private ConfigurationTrees() {
+    }
+
+    /**
+     * A tree shape, given by the number of children of each inner node and the depth.
+     */
+    enum Shape {
+        /** A single level of 10000 leaves, like a long list of includes. */
+        wide(10000, 1),
+        /** A chain of 500 nested elements, for recursion depth. */
+        deep(1, 500),
+        /** Four levels of ten children each, 11110 nodes in total. */
+        bushy(10, 4);
+
+        final int fanOut;
+        final int depth;
+
+        Shape(int fanOut, int depth) {
+            this.fanOut = fanOut;
+            this.depth = depth;
+        }
+    }
+
+    static Element element(Shape shape) {
+        return element("configuration", shape.fanOut, shape.depth);
+    }
+
+    private static Element element(String name, int fanOut, int depth) {
+        if (depth == 0) {
+            return MojoExecutor.element(name, "value-of-" + name,
+                MojoExecutor.attribute("implementation", "java.lang.String"));
+        }
+        Element[] children = new Element[fanOut];
+        for (int i = 0; i < fanOut; i++) {
+            children[i] = element("child" + i, fanOut, depth - 1);
+        }
+        return MojoExecutor.element(name, children);
+    }
+
+    /**
+     * Writes the same tree as {@link #element(Shape)} with a {@link ConfigurationBuilder}.
+     */
+    static Xpp3Dom build(Shape shape) {
+        ConfigurationBuilder builder = MojoExecutor.configurationBuilder();
+        build(builder, shape.fanOut, shape.depth - 1);
+        return builder.build();
+    }
+
+    private static void build(ConfigurationBuilder builder, int fanOut, int depth) {
+        for (int i = 0; i < fanOut; i++) {
+            String name = "child" + i;
+            builder.start(name);
+            if (depth == 0) {
+                builder.value("value-of-" + name).attribute("implementation", "java.lang.String");
+            } else {
+                build(builder, fanOut, depth - 1);
+            }
+            builder.end();
+        }
+    }
+
+    /**
+     * Creates a mojo descriptor configuration like the ones of common plugins: one expression per parameter, with a
+     * default value and an implementation type.
+     *
+     * @param parameters the number of parameters
+     * @return the configuration
+     */
+    static XmlPlexusConfiguration mojoConfiguration(int parameters) {
+        XmlPlexusConfiguration configuration = new XmlPlexusConfiguration("configuration");
+        for (int i = 0; i < parameters; i++) {
+            XmlPlexusConfiguration parameter = new XmlPlexusConfiguration("parameter" + i);
+            parameter.setValue("${mojo.parameter" + i + "}");
+            parameter.setAttribute("implementation", "java.lang.String");
+            parameter.setAttribute("default-value", "${project.build.directory}/parameter" + i);
+            configuration.addChild(parameter);
+        }
+        return configuration;
+    }
+
+    static PlexusConfiguration plexusConfiguration(Shape shape) {
+        return plexusConfiguration("configuration", shape.fanOut, shape.depth);
+    }
+
+    private static XmlPlexusConfiguration plexusConfiguration(String name, int fanOut, int depth) {
+        XmlPlexusConfiguration configuration = new XmlPlexusConfiguration(name);
+        if (depth == 0) {
+            configuration.setValue("value-of-" + name);
+            configuration.setAttribute("implementation", "java.lang.String");
+            return configuration;
+        }
+        for (int i = 0; i < fanOut; i++) {
+            configuration.addChild(plexusConfiguration("child" + i, fanOut, depth - 1));
+        }
+        return configuration;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginManagement;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.twdata.maven.mojoexecutor.MojoExecutor.ExecutionEnvironment;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.twdata.maven.mojoexecutor.MojoExecutor.configuration;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.element;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.executeMojo;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.executionEnvironment;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.plugin;
+
+/**
+ * Measures {@link MojoExecutor#executeMojo} end-to-end against a {@link StubBuildPluginManager}, that is the overhead
+ * the Mojo Executor adds to every execution once the plugin descriptor is cached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecuteMojoBenchmark {
+    private static final int MANAGED_PLUGINS = 300;
+
+    private ExecutionEnvironment env;
+    private Plugin plugin;
+    private Plugin unversionedPlugin;
+    private Xpp3Dom configuration;
+    private PreparedMojo prepared;
+
+    @Setup
+    public void setUp() throws MojoExecutionException {
+        PluginManagement pluginManagement = new PluginManagement();
+        for (int i = 0; i < MANAGED_PLUGINS; i++) {
+            pluginManagement.addPlugin(plugin("org.twdata.maven", "managed-maven-plugin-" + i, "1.0"));
+        }
+        pluginManagement.addPlugin(plugin("org.twdata.maven", "stub-maven-plugin", "1.0"));
+        Build build = new Build();
+        build.setPluginManagement(pluginManagement);
+        Model model = new Model();
+        model.setBuild(build);
+        MavenProject project = new MavenProject(model);
+
+        env = executionEnvironment(project, StubBuildPluginManager.newSession(),
+            new StubBuildPluginManager(ConfigurationTrees.mojoConfiguration(30)));
+        env.getMavenSession().setCurrentProject(project);
+        plugin = plugin("org.twdata.maven", "stub-maven-plugin", "1.0");
+        unversionedPlugin = plugin("org.twdata.maven", "stub-maven-plugin");
+        configuration = configuration(
+            element("parameter0", "value0"),
+            element("parameter1", "value1"),
+            element("parameter2", element("item", "a"), element("item", "b"))
+        );
+        prepared = MojoExecutor.prepare(plugin, StubBuildPluginManager.GOAL, configuration, env);
+    }
+
+    @Benchmark
+    public void executeMojoWithVersion() throws MojoExecutionException {
+        executeMojo(plugin, StubBuildPluginManager.GOAL, configuration, env);
+    }
+
+    @Benchmark
+    public void executeMojoWithManagedVersion() throws MojoExecutionException {
+        executeMojo(unversionedPlugin, StubBuildPluginManager.GOAL, configuration, env);
+    }
+
+    @Benchmark
+    public MojoExecutionResult executePrepared() throws MojoExecutionException {
+        return prepared.execute();
+    }
+}
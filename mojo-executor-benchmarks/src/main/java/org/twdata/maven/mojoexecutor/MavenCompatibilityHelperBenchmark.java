@@ -0,0 +1,102 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.twdata.maven.mojoexecutor.MavenCompatibilityHelper.PluginLoader;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-call overhead of the ways {@link MavenCompatibilityHelper} can reach the Maven API: the
+ * {@code Method.invoke} calls it used to make, the {@code MethodHandle} fallback and direct calls.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MavenCompatibilityHelperBenchmark {
+    private MavenSession session;
+    private BuildPluginManager pluginManager;
+    private Plugin plugin;
+    private List<?> repositories;
+
+    private Method getRepositorySession;
+    private Method loadPlugin;
+    private PluginLoader methodHandleLoader;
+    private PluginLoader directLoader;
+
+    @Setup
+    public void setUp() throws Exception {
+        session = StubBuildPluginManager.newSession();
+        pluginManager = new StubBuildPluginManager();
+        plugin = MojoExecutor.plugin("org.twdata.maven", "stub-maven-plugin", "1.0");
+        repositories = Collections.emptyList();
+
+        for (Method m : MavenSession.class.getMethods()) {
+            if ("getRepositorySession".equals(m.getName())) {
+                getRepositorySession = m;
+                break;
+            }
+        }
+        for (Method m : BuildPluginManager.class.getMethods()) {
+            if ("loadPlugin".equals(m.getName())) {
+                loadPlugin = m;
+                break;
+            }
+        }
+        methodHandleLoader = MavenCompatibilityHelper.methodHandlePluginLoader();
+        directLoader = MavenCompatibilityHelper.directPluginLoader();
+    }
+
+    @Benchmark
+    public PluginDescriptor reflection() throws Exception {
+        Object repositorySession = getRepositorySession.invoke(session);
+        return (PluginDescriptor) loadPlugin.invoke(pluginManager, plugin, repositories, repositorySession);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public PluginDescriptor methodHandle() throws Exception {
+        Object repositorySession = methodHandleLoader.getRepositorySession(session);
+        return methodHandleLoader.loadPlugin(pluginManager, plugin, (List) repositories, repositorySession);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public PluginDescriptor direct() throws Exception {
+        Object repositorySession = directLoader.getRepositorySession(session);
+        return directLoader.loadPlugin(pluginManager, plugin, (List) repositories, repositorySession);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.descriptor.DuplicateMojoDescriptorException;
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.codehaus.plexus.PlexusContainer;
+import org.codehaus.plexus.classworlds.realm.ClassRealm;
+import org.codehaus.plexus.configuration.xml.XmlPlexusConfiguration;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+
+/**
+ * A {@link BuildPluginManager} that resolves every plugin to the same in-memory descriptor and does nothing when
+ * asked to execute a mojo, so benchmarks measure the Mojo Executor rather than Maven.
+ */
+public class StubBuildPluginManager implements BuildPluginManager {
+    public static final String GOAL = "stub";
+
+    private final PluginDescriptor pluginDescriptor;
+    private final MojoDescriptor mojoDescriptor;
+    private volatile MojoExecution lastExecution;
+
+    public StubBuildPluginManager() {
+        this(new XmlPlexusConfiguration("configuration"));
+    }
+
+    public StubBuildPluginManager(XmlPlexusConfiguration mojoConfiguration) {
+        pluginDescriptor = new PluginDescriptor();
+        pluginDescriptor.setGroupId("org.twdata.maven");
+        pluginDescriptor.setArtifactId("stub-maven-plugin");
+        pluginDescriptor.setVersion("1.0");
+
+        mojoDescriptor = new MojoDescriptor();
+        mojoDescriptor.setGoal(GOAL);
+        mojoDescriptor.setMojoConfiguration(mojoConfiguration);
+        mojoDescriptor.setPluginDescriptor(pluginDescriptor);
+        try {
+            pluginDescriptor.addMojo(mojoDescriptor);
+        } catch (DuplicateMojoDescriptorException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates a session that is sufficient for the Mojo Executor: it has a repository session but no container.
+     * <p>
+     * The session must be real, as a mock would cost more than the calls the benchmarks measure. Maven 3.9 added a
+     * constructor without a container; older versions, including the one the build compiles against, only have
+     * deprecated constructors, so the constructor is looked up like {@link MavenCompatibilityHelper} binds the Maven
+     * API.
+     *
+     * @return a new session
+     */
+    public static MavenSession newSession() {
+        RepositorySystemSession repositorySession = new DefaultRepositorySystemSession();
+        MavenExecutionRequest request = new DefaultMavenExecutionRequest();
+        MavenExecutionResult result = new DefaultMavenExecutionResult();
+        try {
+            try {
+                return MavenSession.class.getConstructor(RepositorySystemSession.class, MavenExecutionRequest.class,
+                    MavenExecutionResult.class).newInstance(repositorySession, request, result);
+            } catch (NoSuchMethodException e) {
+                return MavenSession.class.getConstructor(PlexusContainer.class, RepositorySystemSession.class,
+                    MavenExecutionRequest.class, MavenExecutionResult.class)
+                    .newInstance(null, repositorySession, request, result);
+            }
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Unable to create a Maven session", e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Unable to create a Maven session", e.getCause());
+        }
+    }
+
+    public MojoDescriptor getMojoDescriptor() {
+        return mojoDescriptor;
+    }
+
+    public MojoExecution getLastExecution() {
+        return lastExecution;
+    }
+
+    @Override
+    public PluginDescriptor loadPlugin(Plugin plugin, List<RemoteRepository> repositories,
+                                      RepositorySystemSession session) {
+        return pluginDescriptor;
+    }
+
+    @Override
+    public MojoDescriptor getMojoDescriptor(Plugin plugin, String goal, List<RemoteRepository> repositories,
+                                            RepositorySystemSession session) {
+        return pluginDescriptor.getMojo(goal);
+    }
+
+    @Override
+    public ClassRealm getPluginRealm(MavenSession session,
+                                     PluginDescriptor pluginDescriptor) {
+        return null;
+    }
+
+    @Override
+    public void executeMojo(MavenSession session, MojoExecution execution) {
+        lastExecution = execution;
+    }
+}
@@ -0,0 +1,22 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+File buildLog = new File((String) basedir, "build.log")
+def text = buildLog.getText()
+text = text.replaceAll("\r\n", "\n")
+def v1 = text.contains("[INFO] Executing 'org.apache.maven.plugins:maven-dependency-plugin' in blocking mode.")
+def v2 = text.contains("[INFO] Blocking mode statistics per plugin:")
+def v3 = text =~ /\[INFO\]   org\.apache\.maven\.plugins:maven-dependency-plugin: 1 acquisitions, 0 timeouts/
+return v1 && v2 && v3.find();
@@ -0,0 +1,21 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+File buildLog = new File((String) basedir, "build.log")
+def text = buildLog.getText()
+text = text.replaceAll("\r\n", "\n")
+assert text.contains("[INFO] Most expensive expressions to evaluate:")
+assert text =~ /\[INFO\]  +\d+ +1 +1  \$\{project\.build\.directory\}/
+return true
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import jdk.jfr.consumer.RecordingFile
+
+def events = RecordingFile.readAllEvents(new File((String) basedir, "recording.jfr").toPath())
+def byType = events.groupBy { it.eventType.name }
+
+def executions = byType["org.twdata.maven.mojoexecutor.MojoExecution"]
+assert executions.size() == 1
+assert executions[0].getString("plugin") == "org.apache.maven.plugins:maven-dependency-plugin:2.0"
+assert executions[0].getString("goal") == "list"
+assert executions[0].getString("outcome") == "EXECUTED"
+
+def loads = byType["org.twdata.maven.mojoexecutor.DescriptorLoad"]
+assert loads.size() == 1
+assert !loads[0].getBoolean("cacheHit")
+
+def waits = byType["org.twdata.maven.mojoexecutor.BlockingLockWait"]
+assert waits.size() == 1
+assert waits[0].getString("key") == "org.apache.maven.plugins:maven-dependency-plugin"
+assert waits[0].getBoolean("acquired")
+return true
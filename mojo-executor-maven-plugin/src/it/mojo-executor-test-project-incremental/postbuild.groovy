@@ -0,0 +1,22 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+File buildLog = new File((String) basedir, "build.log")
+def text = buildLog.getText()
+text = text.replaceAll("\r\n", "\n")
+def v1 = text.count("[INFO] The following files have been resolved:") == 1
+def v2 = text.contains("[INFO] Skipping 'org.apache.maven.plugins:maven-dependency-plugin:list', it is up to date.")
+def v3 = new File((String) basedir, "target/mojo-executor/org.apache.maven.plugins_maven-dependency-plugin_list.sha256").isFile()
+return v1 && v2 && v3;
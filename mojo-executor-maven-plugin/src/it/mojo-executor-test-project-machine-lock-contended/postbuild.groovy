@@ -0,0 +1,29 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.nio.channels.FileChannel
+
+// release the slot held by prebuild.groovy
+((FileChannel) System.properties.remove("mojo-executor.it.machine-lock-contended")).close()
+
+File buildLog = new File((String) basedir, "build.log")
+def text = buildLog.getText()
+text = text.replaceAll("\r\n", "\n")
+def v1 = text.contains("[WARNING] Machine-wide lock of 'org.apache.maven.plugins:maven-dependency-plugin' is held beyond its lease by other build, lease until 1970 (1)")
+def v2 = text =~ /\[ERROR\] Timed out after \d+ ms waiting for machine-wide lock of 'org.apache.maven.plugins:maven-dependency-plugin' in /
+def v3 = !text.contains("The following files have been resolved:")
+def lockFile = new File((String) basedir, "locks/org.apache.maven.plugins_maven-dependency-plugin.0.lock")
+def v4 = lockFile.getText("UTF-8") == "other build, lease until 1970 (1)"
+return v1 && v2 && v3 && v4
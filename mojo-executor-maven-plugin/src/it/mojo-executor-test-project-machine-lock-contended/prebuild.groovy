@@ -0,0 +1,30 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.StandardOpenOption
+
+// hold the only slot from this process, as another build on the machine would, with a lease that expired long ago
+File lockFile = new File((String) basedir, "locks/org.apache.maven.plugins_maven-dependency-plugin.0.lock")
+lockFile.parentFile.mkdirs()
+FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)
+channel.tryLock(Long.MAX_VALUE - 1, 1, false)
+channel.truncate(0)
+channel.write(ByteBuffer.wrap("other build, lease until 1970 (1)".getBytes(StandardCharsets.UTF_8)))
+System.properties.put("mojo-executor.it.machine-lock-contended", channel)
+return true
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import groovy.json.JsonSlurper
+
+File buildLog = new File((String) basedir, "build.log")
+def text = buildLog.getText()
+text = text.replaceAll("\r\n", "\n")
+assert text.contains("[INFO] Mojo execution trace written to")
+
+def events = new JsonSlurper().parse(new File((String) basedir, "target/trace.json"))
+def mojo = events.find { it.ph == "X" && it.cat == "mojo" }
+assert mojo.name == "maven-dependency-plugin:list"
+assert mojo.args.plugin == "org.apache.maven.plugins:maven-dependency-plugin:2.0"
+assert mojo.args.project == "org.twdata.maven:mojo-executor-test-project-trace:1.0-SNAPSHOT"
+assert events.any { it.ph == "X" && it.cat == "phase" && it.name == "execution" && it.tid == mojo.tid }
+assert events.any { it.ph == "X" && it.cat == "lock" && it.name == "wait for org.apache.maven.plugins:maven-dependency-plugin" }
+assert events.any { it.ph == "M" && it.name == "thread_name" && it.tid == mojo.tid }
+
+def metrics = new JsonSlurper().parse(new File((String) basedir, "target/mojo-executor-metrics.json"))
+assert metrics.executions == 1
+assert metrics.failures == 0
+def list = metrics.goals.find { it.mojo == "org.apache.maven.plugins:maven-dependency-plugin:list" }
+assert list.count == 1
+assert list.p50Ms <= list.maxMs && list.p99Ms <= list.maxMs && list.maxMs <= list.totalMs
+return true
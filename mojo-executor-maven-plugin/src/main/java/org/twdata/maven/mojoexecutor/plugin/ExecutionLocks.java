@@ -0,0 +1,203 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JVM-wide locks used by the blocking mode of {@link MojoExecutorMojo}, one fair semaphore per key, so that releasing
+ * a key only wakes the threads waiting for that key. A key admits as many concurrent holders as the semaphore has
+ * permits; blocking mode uses a single permit.
+ */
+final class ExecutionLocks {
+    private static final ConcurrentMap<String, KeyLock> locks = new ConcurrentHashMap<>();
+
+    private ExecutionLocks() {
+        throw new AssertionError("non-instantiable");
+    }
+
+    /**
+     * Acquires a permit of the given key. The number of permits of a key is fixed by its first use.
+     *
+     * @param key           the key
+     * @param permits       the number of permits of the key
+     * @param timeoutMillis the maximum time to wait, or {@code 0} to wait indefinitely
+     * @return the lease, to be closed by the acquiring thread
+     * @throws InterruptedException if interrupted while waiting; the key is not held
+     * @throws TimeoutException     if the key could not be acquired in time; the key is not held
+     */
+    static Lease acquire(String key, int permits, long timeoutMillis) throws InterruptedException, TimeoutException {
+        if (permits < 1) {
+            throw new IllegalArgumentException("permits must be positive");
+        }
+        KeyLock keyLock = locks.computeIfAbsent(key, k -> new KeyLock(k, permits));
+        long start = System.nanoTime();
+        if (timeoutMillis > 0) {
+            if (!keyLock.semaphore.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                keyLock.statistics.timedOut(System.nanoTime() - start);
+                throw new TimeoutException("Timed out after " + timeoutMillis + " ms waiting for '" + key + "'");
+            }
+        } else {
+            keyLock.semaphore.acquire();
+        }
+        long acquired = System.nanoTime();
+        keyLock.statistics.acquired(acquired - start);
+        return new Lease(keyLock, acquired);
+    }
+
+    /**
+     * Returns the statistics of all keys used since the last call and resets them.
+     *
+     * @return the statistics, sorted by key
+     */
+    static List<Statistics> drainStatistics() {
+        List<Statistics> result = new ArrayList<>();
+        for (Map.Entry<String, KeyLock> entry : locks.entrySet()) {
+            Statistics snapshot = entry.getValue().statistics.drain();
+            if (snapshot.getAcquisitions() > 0 || snapshot.getTimeouts() > 0) {
+                result.add(snapshot);
+            }
+        }
+        result.sort((a, b) -> a.getKey().compareTo(b.getKey()));
+        return result;
+    }
+
+    private static final class KeyLock {
+        final Semaphore semaphore;
+        final int permits;
+        final Statistics statistics;
+
+        KeyLock(String key, int permits) {
+            this.semaphore = new Semaphore(permits, true);
+            this.permits = permits;
+            this.statistics = new Statistics(key);
+        }
+    }
+
+    /**
+     * A held key. Closing it releases the key and records the hold time.
+     */
+    static final class Lease implements AutoCloseable {
+        private final KeyLock keyLock;
+        private final long acquiredNanos;
+        private long holdNanos = -1;
+
+        private Lease(KeyLock keyLock, long acquiredNanos) {
+            this.keyLock = keyLock;
+            this.acquiredNanos = acquiredNanos;
+        }
+
+        /**
+         * @return the number of permits of the key, which may differ from the requested number
+         */
+        int getPermits() {
+            return keyLock.permits;
+        }
+
+        /**
+         * @return how long the key was held, in nanoseconds; only valid once closed
+         */
+        long getHoldNanos() {
+            return holdNanos;
+        }
+
+        @Override
+        public void close() {
+            if (holdNanos < 0) {
+                holdNanos = System.nanoTime() - acquiredNanos;
+                keyLock.statistics.released(holdNanos);
+                keyLock.semaphore.release();
+            }
+        }
+    }
+
+    /**
+     * Wait and hold times of a single key.
+     */
+    static final class Statistics {
+        private final String key;
+        private final AtomicLong acquisitions = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        private final AtomicLong totalHoldNanos = new AtomicLong();
+        private final AtomicLong maxHoldNanos = new AtomicLong();
+
+        Statistics(String key) {
+            this.key = key;
+        }
+
+        void acquired(long waitNanos) {
+            acquisitions.incrementAndGet();
+            recordWait(waitNanos);
+        }
+
+        void timedOut(long waitNanos) {
+            timeouts.incrementAndGet();
+            recordWait(waitNanos);
+        }
+
+        private void recordWait(long waitNanos) {
+            totalWaitNanos.addAndGet(waitNanos);
+            maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        }
+
+        void released(long holdNanos) {
+            totalHoldNanos.addAndGet(holdNanos);
+            maxHoldNanos.accumulateAndGet(holdNanos, Math::max);
+        }
+
+        Statistics drain() {
+            Statistics snapshot = new Statistics(key);
+            snapshot.acquisitions.set(acquisitions.getAndSet(0));
+            snapshot.timeouts.set(timeouts.getAndSet(0));
+            snapshot.totalWaitNanos.set(totalWaitNanos.getAndSet(0));
+            snapshot.maxWaitNanos.set(maxWaitNanos.getAndSet(0));
+            snapshot.totalHoldNanos.set(totalHoldNanos.getAndSet(0));
+            snapshot.maxHoldNanos.set(maxHoldNanos.getAndSet(0));
+            return snapshot;
+        }
+
+        String getKey() {
+            return key;
+        }
+
+        long getAcquisitions() {
+            return acquisitions.get();
+        }
+
+        long getTimeouts() {
+            return timeouts.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d acquisitions, %d timeouts, wait %d ms total / %d ms max, "
+                    + "hold %d ms total / %d ms max",
+                key, acquisitions.get(), timeouts.get(),
+                TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get()), TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()),
+                TimeUnit.NANOSECONDS.toMillis(totalHoldNanos.get()), TimeUnit.NANOSECONDS.toMillis(maxHoldNanos.get()));
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor.plugin;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Machine-wide locks used by the blocking mode of {@link MojoExecutorMojo}, based on {@link FileChannel} locks in a
+ * shared directory. A key with {@code n} permits is backed by {@code n} slot files; holding a lock on one of them
+ * holds a permit.
+ * <p>
+ * The operating system releases the locks of a process that dies, so a lock can never stay held by a dead process.
+ * Each holder writes an owner record (process, acquisition time and lease expiry) into its slot file and clears it on
+ * release. A record found when acquiring a slot therefore identifies a holder that terminated without releasing it,
+ * and waiters report holders that exceed their lease.
+ * <p>
+ * File locks are held on behalf of the whole JVM, and on POSIX systems closing any channel to a file releases all of
+ * them. Each slot file is therefore opened once per JVM and its channel is never closed, and slots held by a thread of
+ * this JVM are skipped rather than probed.
+ */
+final class FileExecutionLocks {
+    private static final String OWNER = ManagementFactory.getRuntimeMXBean().getName();
+    // lock a byte far beyond the owner record, so that the record stays readable on platforms with mandatory locks
+    private static final long LOCK_POSITION = Long.MAX_VALUE - 1;
+    private static final long MIN_POLL_MILLIS = 10;
+    private static final long MAX_POLL_MILLIS = 500;
+
+    private static final ConcurrentMap<Path, Slot> slots = new ConcurrentHashMap<>();
+
+    private FileExecutionLocks() {
+        throw new AssertionError("non-instantiable");
+    }
+
+    /**
+     * Acquires one of the slots of the given key. Threads of the same JVM must already hold a permit of the key in
+     * {@link ExecutionLocks}, which keeps them from competing for more slots than there are.
+     *
+     * @param directory     the lock directory, created if missing
+     * @param key           the key
+     * @param permits       the number of slots of the key
+     * @param timeoutMillis the maximum time to wait, or {@code 0} to wait indefinitely
+     * @param leaseMillis   the time after which a holder is reported as exceeding its lease, or {@code 0} for none
+     * @param log           the log to report stale locks and expired leases to
+     * @return the lease, to be closed by the acquiring thread
+     * @throws IOException          if the lock files cannot be used
+     * @throws InterruptedException if interrupted while waiting; no slot is held
+     * @throws TimeoutException     if no slot could be acquired in time; no slot is held
+     */
+    static Lease acquire(File directory, String key, int permits, long timeoutMillis, long leaseMillis, Log log)
+            throws IOException, InterruptedException, TimeoutException {
+        Files.createDirectories(directory.toPath());
+        String fileName = key.replaceAll("[^A-Za-z0-9._-]", "_");
+        long deadline = timeoutMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : 0;
+        long pollMillis = MIN_POLL_MILLIS;
+        boolean expiredLeaseReported = false;
+        while (true) {
+            for (int index = 0; index < permits; index++) {
+                Slot slot = slot(directory.toPath().resolve(fileName + "." + index + ".lock"));
+                if (!slot.inUse.compareAndSet(false, true)) {
+                    // held or being probed by another thread of this JVM
+                    continue;
+                }
+                Lease lease = null;
+                try {
+                    lease = tryAcquire(slot, leaseMillis, key, log);
+                    if (lease != null) {
+                        return lease;
+                    }
+                    if (leaseMillis > 0 && !expiredLeaseReported) {
+                        expiredLeaseReported = reportExpiredLease(slot, key, log);
+                    }
+                } finally {
+                    if (lease == null) {
+                        slot.inUse.set(false);
+                    }
+                }
+            }
+            if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+                throw new TimeoutException("Timed out after " + timeoutMillis + " ms waiting for machine-wide lock of '"
+                    + key + "' in " + directory);
+            }
+            Thread.sleep(pollMillis);
+            pollMillis = Math.min(pollMillis * 2, MAX_POLL_MILLIS);
+        }
+    }
+
+    private static Slot slot(Path file) {
+        Path path = file.toAbsolutePath().normalize();
+        Slot slot = slots.get(path);
+        return slot != null ? slot : slots.computeIfAbsent(path, Slot::new);
+    }
+
+    /**
+     * Tries to lock the slot, which the calling thread must be using exclusively.
+     */
+    private static Lease tryAcquire(Slot slot, long leaseMillis, String key, Log log) throws IOException {
+        FileChannel channel = slot.channel();
+        FileLock lock;
+        try {
+            lock = channel.tryLock(LOCK_POSITION, 1, false);
+        } catch (OverlappingFileLockException e) {
+            // locked through a channel this class does not own; never close ours, as that would release it
+            return null;
+        }
+        if (lock == null) {
+            return null;
+        }
+        try {
+            String previousOwner = read(channel);
+            if (!previousOwner.isEmpty()) {
+                log.warn(String.format("Recovered stale machine-wide lock of '%s' left by %s", key, previousOwner));
+            }
+            long now = System.currentTimeMillis();
+            String owner = OWNER + " since " + new Date(now)
+                + (leaseMillis > 0 ? ", lease until " + new Date(now + leaseMillis) + " (" + (now + leaseMillis) + ")" : "");
+            write(channel, owner);
+            return new Lease(slot, lock);
+        } catch (IOException | RuntimeException e) {
+            lock.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Reports the holder of the slot, which the calling thread must be using exclusively, if it exceeds its lease.
+     */
+    private static boolean reportExpiredLease(Slot slot, String key, Log log) {
+        try {
+            String owner = read(slot.channel());
+            int start = owner.lastIndexOf('(');
+            int end = owner.lastIndexOf(')');
+            if (start < 0 || end < start) {
+                return false;
+            }
+            long expiry = Long.parseLong(owner.substring(start + 1, end));
+            if (System.currentTimeMillis() > expiry) {
+                log.warn(String.format("Machine-wide lock of '%s' is held beyond its lease by %s", key, owner));
+                return true;
+            }
+        } catch (IOException | NumberFormatException e) {
+            // the holder is just releasing the slot, or the record is unreadable on this platform
+        }
+        return false;
+    }
+
+    private static String read(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size == 0 || size > 4096) {
+            return "";
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+            // keep reading
+        }
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8).trim();
+    }
+
+    private static void write(FileChannel channel, String owner) throws IOException {
+        channel.truncate(0);
+        ByteBuffer buffer = ByteBuffer.wrap(owner.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, buffer.position());
+        }
+        channel.force(false);
+    }
+
+    /**
+     * A slot file and the only channel of this JVM to it. A thread must set {@link #inUse} before using the channel,
+     * and the holder of the slot keeps it set until it releases the lock.
+     */
+    private static final class Slot {
+        private final Path file;
+        private final AtomicBoolean inUse = new AtomicBoolean();
+        private FileChannel channel;
+
+        private Slot(Path file) {
+            this.file = file;
+        }
+
+        private FileChannel channel() throws IOException {
+            // a channel is only closed by the JDK, when a thread using it is interrupted; no lock is held on it then
+            if (channel == null || !channel.isOpen()) {
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            }
+            return channel;
+        }
+    }
+
+    /**
+     * A held slot. Closing it clears the owner record and releases the slot, keeping its channel open.
+     */
+    static final class Lease implements AutoCloseable {
+        private final Slot slot;
+        private final FileLock lock;
+        private boolean closed;
+
+        private Lease(Slot slot, FileLock lock) {
+            this.slot = slot;
+            this.lock = lock;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (lock.isValid()) {
+                    slot.channel.truncate(0);
+                    slot.channel.force(false);
+                }
+            } finally {
+                try {
+                    if (lock.isValid()) {
+                        lock.release();
+                    }
+                } finally {
+                    slot.inUse.set(false);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor.plugin;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events for the time {@link MojoExecutorMojo} waits for a permit in blocking mode. Like the
+ * events of the Mojo Executor itself, they are only touched on JVMs that provide JFR, and only created while a
+ * recording enables them.
+ */
+final class LockWaitEvents {
+    private static final boolean AVAILABLE = isAvailable();
+
+    private LockWaitEvents() {
+        throw new AssertionError("non-instantiable");
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, LockWaitEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the started event, or {@code null} without JFR or if no recording enables the event
+     */
+    static Object begin() {
+        return AVAILABLE ? Events.begin() : null;
+    }
+
+    static void commit(Object event, String key, int permits, boolean machineScope, boolean acquired) {
+        if (event != null) {
+            Events.commit(event, key, permits, machineScope, acquired);
+        }
+    }
+
+    /**
+     * Keeps the JFR types out of the methods above, so that this class loads and verifies without JFR.
+     */
+    private static final class Events {
+        private static final EventType LOCK_WAIT = EventType.getEventType(BlockingLockWaitEvent.class);
+
+        static Object begin() {
+            if (!LOCK_WAIT.isEnabled()) {
+                return null;
+            }
+            BlockingLockWaitEvent event = new BlockingLockWaitEvent();
+            event.begin();
+            return event;
+        }
+
+        static void commit(Object started, String key, int permits, boolean machineScope, boolean acquired) {
+            BlockingLockWaitEvent event = (BlockingLockWaitEvent) started;
+            event.end();
+            if (event.shouldCommit()) {
+                event.key = key;
+                event.permits = permits;
+                event.machineScope = machineScope;
+                event.acquired = acquired;
+                event.commit();
+            }
+        }
+    }
+
+    @Name("org.twdata.maven.mojoexecutor.BlockingLockWait")
+    @Label("Blocking Lock Wait")
+    @Description("Time spent waiting for a permit to execute a plugin in blocking mode")
+    @Category({"Maven", "Mojo Executor"})
+    static final class BlockingLockWaitEvent extends Event {
+        @Label("Key")
+        String key;
+
+        @Label("Permits")
+        int permits;
+
+        @Label("Machine Scope")
+        boolean machineScope;
+
+        @Label("Acquired")
+        boolean acquired;
+    }
+}
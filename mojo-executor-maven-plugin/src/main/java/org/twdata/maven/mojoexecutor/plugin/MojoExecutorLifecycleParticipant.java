@@ -0,0 +1,112 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor.plugin;
+
+import org.apache.maven.AbstractMavenLifecycleParticipant;
+import org.apache.maven.execution.MavenSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.maven.project.MavenProject;
+import org.twdata.maven.mojoexecutor.ExecutionMetrics;
+import org.twdata.maven.mojoexecutor.ExpressionCache;
+import org.twdata.maven.mojoexecutor.OutputCache;
+import org.twdata.maven.mojoexecutor.ResourceAccounting;
+import org.twdata.maven.mojoexecutor.TraceRecorder;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Enables the {@link ExecutionMetrics} of the session once the projects are read. When the session ends, reports
+ * session-wide statistics of {@link MojoExecutorMojo}, writes the metrics to {@value #METRICS_FILE} in the build
+ * directory of the top level project and completes the trace file of the session. Maven only loads lifecycle
+ * participants of plugins declared with {@code <extensions>true</extensions>}.
+ */
+@Named("mojo-executor")
+@Singleton
+public class MojoExecutorLifecycleParticipant extends AbstractMavenLifecycleParticipant {
+    static final String METRICS_FILE = "mojo-executor-metrics.json";
+
+    private static final Logger logger = LoggerFactory.getLogger(MojoExecutorLifecycleParticipant.class);
+
+    @Override
+    public void afterProjectsRead(MavenSession session) {
+        ExecutionMetrics.forSession(session);
+    }
+
+    @Override
+    public void afterSessionEnd(MavenSession session) {
+        List<ExecutionLocks.Statistics> statistics = ExecutionLocks.drainStatistics();
+        if (!statistics.isEmpty()) {
+            logger.info("Blocking mode statistics per plugin:");
+            for (ExecutionLocks.Statistics keyStatistics : statistics) {
+                logger.info("  " + keyStatistics);
+            }
+        }
+
+        List<OutputCache> caches = OutputCaches.drain();
+        if (!caches.isEmpty()) {
+            logger.info("Output cache statistics:");
+            for (OutputCache cache : caches) {
+                logger.info("  " + cache);
+            }
+        }
+
+        ResourceAccounting accounting = ResourceAccountings.drain();
+        if (accounting != null) {
+            logger.info("Resource usage per mojo, by CPU time:");
+            for (String line : accounting.toString().split(System.lineSeparator())) {
+                logger.info("  " + line);
+            }
+        }
+
+        ExpressionCache expressions = ExpressionCache.close(session);
+        if (expressions != null && !expressions.getExpressions().isEmpty()) {
+            logger.info("Most expensive expressions to evaluate:");
+            for (String line : expressions.toString().split(System.lineSeparator())) {
+                logger.info("  " + line);
+            }
+        }
+
+        ExecutionMetrics metrics = ExecutionMetrics.close(session);
+        if (metrics != null) {
+            File file = new File(buildDirectory(session), METRICS_FILE);
+            try {
+                metrics.writeJson(file);
+                logger.info("Mojo execution metrics written to " + file);
+            } catch (IOException e) {
+                logger.warn("Unable to write mojo execution metrics to " + file, e);
+            }
+        }
+
+        TraceRecorder trace = TraceRecorder.close(session);
+        if (trace != null) {
+            logger.info("Mojo execution trace written to " + trace.getFile());
+        }
+    }
+
+    private static File buildDirectory(MavenSession session) {
+        MavenProject topLevelProject = session.getTopLevelProject();
+        if (topLevelProject != null && topLevelProject.getBuild() != null
+            && topLevelProject.getBuild().getDirectory() != null) {
+            return new File(topLevelProject.getBuild().getDirectory());
+        }
+        return new File(session.getExecutionRootDirectory(), "target");
+    }
+}
@@ -15,9 +15,6 @@
  */
 package org.twdata.maven.mojoexecutor.plugin;
 
-import org.apache.commons.lang3.reflect.FieldUtils;
-import org.apache.maven.cli.logging.Slf4jConfiguration;
-import org.apache.maven.cli.logging.Slf4jConfigurationFactory;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Plugin;
 import org.apache.maven.plugin.AbstractMojo;
@@ -26,17 +23,25 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.*;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.configuration.PlexusConfiguration;
-import org.codehaus.plexus.logging.Logger;
-import org.slf4j.ILoggerFactory;
-import org.slf4j.LoggerFactory;
+import org.twdata.maven.mojoexecutor.ExpressionCache;
+import org.twdata.maven.mojoexecutor.MojoExecutionResult;
+import org.twdata.maven.mojoexecutor.MojoExecutor.ExecutionEnvironment;
+import org.twdata.maven.mojoexecutor.ThreadOutput;
+import org.twdata.maven.mojoexecutor.TraceRecorder;
+import org.twdata.maven.mojoexecutor.UpToDateCheck;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static java.lang.String.format;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.executeMojo;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.executionEnvironment;
-import static org.twdata.maven.mojoexecutor.PlexusConfigurationUtils.toXpp3Dom;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.outputBuffering;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.upToDateCheck;
+import static org.twdata.maven.mojoexecutor.PlexusConfigurationUtils.asXpp3Dom;
 
 /**
  * Execute a Mojo using the MojoExecutor.
@@ -44,7 +49,6 @@ import static org.twdata.maven.mojoexecutor.PlexusConfigurationUtils.toXpp3Dom;
 @SuppressWarnings("unused")
 @Mojo(name = "execute-mojo", defaultPhase = LifecyclePhase.TEST, requiresDependencyResolution = ResolutionScope.TEST)
 public class MojoExecutorMojo extends AbstractMojo {
-    private static final Set<String> lockedKeys = new HashSet<>();
 
     /**
      * Plugin to execute.
@@ -83,17 +87,157 @@ public class MojoExecutorMojo extends AbstractMojo {
     private BuildPluginManager pluginManager;
 
     /**
-     * Disable logging on executed mojos
+     * Disable logging on executed mojos. Only the output of the executing thread is suppressed, and only while the
+     * mojo executes
      */
     @Parameter(defaultValue = "false")
     private boolean quiet;
 
+    /**
+     * Buffer the output of executed mojos and write it in one piece when the execution completes, so that the output
+     * of concurrent executions does not interleave. Buffered output beyond 1 MB is kept in a temporary file
+     */
+    @Parameter(defaultValue = "false")
+    private boolean bufferOutput;
+
+    /**
+     * Only write the buffered output of executions that fail. Implies {@link #bufferOutput}
+     */
+    @Parameter(defaultValue = "false")
+    private boolean bufferOutputOnFailure;
+
+    /**
+     * Size in megabytes beyond which buffered output is discarded
+     */
+    @Parameter(defaultValue = "64")
+    private long bufferMaxSize;
+
     /**
      * Enable thread blocking per plugin GA (groupId & artifactId)
      */
     @Parameter(defaultValue = "false")
     private boolean blocking;
 
+    /**
+     * Maximum number of concurrent executions per plugin GA (groupId &amp; artifactId) across the JVM, either absolute
+     * (e.g. {@code 3}) or relative to the available processors (e.g. {@code 0.5C}). Implies blocking mode; blocking
+     * without this parameter allows a single execution.
+     */
+    @Parameter
+    private String maxConcurrent;
+
+    /**
+     * Maximum time in seconds to wait for the plugin GA in blocking mode, 0 to wait indefinitely
+     */
+    @Parameter(defaultValue = "0")
+    private long lockTimeout;
+
+    /**
+     * Scope of blocking mode: {@code process} blocks within this JVM, {@code machine} additionally uses file locks in
+     * {@link #lockDirectory} to block Maven processes sharing that directory
+     */
+    @Parameter(defaultValue = "process")
+    private String lockScope;
+
+    /**
+     * Directory of the file locks used by the {@code machine} lock scope
+     */
+    @Parameter(defaultValue = "${java.io.tmpdir}/mojo-executor-locks")
+    private File lockDirectory;
+
+    /**
+     * Time in seconds after which a holder of a {@code machine} scoped lock is reported as exceeding its lease, 0 to
+     * disable the check
+     */
+    @Parameter(defaultValue = "0")
+    private long lockLease;
+
+    /**
+     * Skip the execution when the plugin, goal, configuration and {@link #inputs} are unchanged since its last
+     * successful execution and all {@link #outputs} exist
+     */
+    @Parameter(defaultValue = "false")
+    private boolean incremental;
+
+    /**
+     * Input files and directories of the execution in incremental mode
+     */
+    @Parameter
+    private File[] inputs;
+
+    /**
+     * Output files and directories of the execution in incremental mode
+     */
+    @Parameter
+    private File[] outputs;
+
+    /**
+     * Directory to store the fingerprints of incremental executions in
+     */
+    @Parameter(defaultValue = "${project.build.directory}/mojo-executor")
+    private File stateDirectory;
+
+    /**
+     * Restore the {@link #outputs} from a cache shared by all builds on this machine instead of executing the mojo, if
+     * an execution with the same plugin, goal, configuration and {@link #inputs} stored them there. Implies
+     * incremental mode
+     */
+    @Parameter(defaultValue = "false")
+    private boolean cache;
+
+    /**
+     * Directory of the output cache
+     */
+    @Parameter(defaultValue = "${user.home}/.m2/mojo-executor-cache")
+    private File cacheDirectory;
+
+    /**
+     * Size in megabytes beyond which least recently used entries are evicted from the output cache
+     */
+    @Parameter(defaultValue = "1024")
+    private long cacheMaxSize;
+
+    /**
+     * Restore outputs from the cache as read-only hard links instead of copies
+     */
+    @Parameter(defaultValue = "false")
+    private boolean cacheHardLinks;
+
+    /**
+     * Measure the CPU time, allocations and garbage collections of the executed mojos; the lifecycle participant
+     * reports the totals per plugin goal at the end of the session
+     */
+    @Parameter(defaultValue = "false")
+    private boolean accountResources;
+
+    /**
+     * CPU time in seconds beyond which an execution is reported, 0 for none. Implies {@link #accountResources}
+     */
+    @Parameter(defaultValue = "0")
+    private long cpuBudget;
+
+    /**
+     * Heap allocations in megabytes beyond which an execution is reported, 0 for none. Implies
+     * {@link #accountResources}
+     */
+    @Parameter(defaultValue = "0")
+    private long allocationBudget;
+
+    /**
+     * Resolve the {@code ${...}} expressions of the configuration once per project for the whole session instead of
+     * on each execution; the lifecycle participant reports the most expensive expressions at the end of the session.
+     * Properties changed by mojos after an expression was first resolved are not seen
+     */
+    @Parameter(defaultValue = "false")
+    private boolean interpolateExpressions;
+
+    /**
+     * File to record the mojo executions of the whole session to, in the Chrome Trace Event format for Perfetto. The
+     * {@code mojoexecutor.trace} property enables the same for all executions of a build
+     */
+    @Parameter
+    private File traceFile;
+
     /**
      * Ignore injected maven projetc
      */
@@ -104,32 +248,91 @@ public class MojoExecutorMojo extends AbstractMojo {
 
         getLog().info("Executing with maven project " + mavenProject + " for session " + mavenSession);
 
-        if (quiet) {
-            disableLogging();
+        if (traceFile != null) {
+            try {
+                TraceRecorder.start(mavenSession, traceFile);
+            } catch (IOException e) {
+                getLog().warn("Unable to record mojo executions to " + traceFile, e);
+            }
         }
 
         // Blocking case.
-        if (blocking) {
+        if (blocking || maxConcurrent != null) {
             final String key = format("%s:%s", plugin.getGroupId(), plugin.getArtifactId());
+            final int permits = maxConcurrent != null ? parseConcurrency(maxConcurrent) : 1;
+            final boolean machineScope = isMachineScope();
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(lockTimeout);
 
+            ExecutionLocks.Lease lease;
+            FileExecutionLocks.Lease fileLease = null;
+            final long waitStart = System.nanoTime();
+            final Object waitEvent = LockWaitEvents.begin();
+            boolean acquired = false;
             try {
-                lock(key);
+                lease = ExecutionLocks.acquire(key, permits, TimeUnit.SECONDS.toMillis(lockTimeout));
+                if (machineScope) {
+                    try {
+                        long remaining = lockTimeout > 0
+                                ? Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) : 0;
+                        fileLease = FileExecutionLocks.acquire(lockDirectory, key, lease.getPermits(), remaining,
+                                TimeUnit.SECONDS.toMillis(lockLease), getLog());
+                    } catch (IOException | InterruptedException | TimeoutException | RuntimeException e) {
+                        lease.close();
+                        throw e;
+                    }
+                }
+                acquired = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                final String failed = "Interrupted while waiting for '" + key + "'";
+                getLog().error(failed, e);
+                throw new MojoExecutionException(failed, e);
+            } catch (TimeoutException e) {
+                getLog().error(e.getMessage());
+                throw new MojoExecutionException(e.getMessage(), e);
+            } catch (IOException e) {
+                final String failed = "Unable to lock '" + key + "' in " + lockDirectory;
+                getLog().error(failed, e);
+                throw new MojoExecutionException(failed, e);
+            } finally {
+                LockWaitEvents.commit(waitEvent, key, permits, machineScope, acquired);
+            }
 
-                getLog().info(String.format("Executing '%s' in blocking mode.", key));
+            TraceRecorder trace = TraceRecorder.forSession(mavenSession);
+            if (trace != null) {
+                trace.span("wait for " + key, "lock", waitStart, System.nanoTime() - waitStart,
+                        Collections.singletonMap("permits", lease.getPermits()));
+            }
+
+            try {
+                if (lease.getPermits() != permits) {
+                    getLog().warn(String.format("'%s' is already limited to %d concurrent executions, ignoring %d.",
+                            key, lease.getPermits(), permits));
+                }
+                if (lease.getPermits() == 1) {
+                    getLog().info(String.format("Executing '%s' in %sblocking mode.", key,
+                            machineScope ? "machine-wide " : ""));
+                } else {
+                    getLog().info(String.format("Executing '%s' with at most %d concurrent executions%s.", key,
+                            lease.getPermits(), machineScope ? " on this machine" : ""));
+                }
 
-                //Put your code here.
                 //For different keys it is executed in parallel.
-                //For equal keys it is executed synchronously.
+                //For equal keys at most the number of permits is executed concurrently.
                 executeMojoImpl();
-
-            } catch (InterruptedException e) {
-                final String failed = "Failed to execute mojo";
-                getLog().error(failed, e);
-                throw new MojoExecutionException(failed, e);
             } finally {
-                unlock(key);
+                try {
+                    if (fileLease != null) {
+                        fileLease.close();
+                    }
+                } catch (IOException e) {
+                    getLog().warn("Unable to release machine-wide lock of '" + key + "'", e);
+                } finally {
+                    lease.close();
+                }
 
-                getLog().info(String.format("Released '%s' block.", key));
+                getLog().info(String.format("Released '%s' block after %d ms.", key,
+                        TimeUnit.NANOSECONDS.toMillis(lease.getHoldNanos())));
             }
         } else {
             // Non blocking case.
@@ -137,42 +340,79 @@ public class MojoExecutorMojo extends AbstractMojo {
         }
     }
 
-    private void executeMojoImpl() throws MojoExecutionException {
-        executeMojo(plugin, goal, toXpp3Dom(configuration),
-                (ignoreMavenProject ?
-                        executionEnvironment(mavenSession, pluginManager) :
-                        executionEnvironment(mavenProject, mavenSession, pluginManager)));
+    private boolean isMachineScope() throws MojoExecutionException {
+        if ("machine".equalsIgnoreCase(lockScope)) {
+            return true;
+        }
+        if ("process".equalsIgnoreCase(lockScope)) {
+            return false;
+        }
+        throw new MojoExecutionException("Invalid lockScope '" + lockScope + "': expected 'process' or 'machine'");
     }
 
-    private void disableLogging() throws MojoExecutionException {
-        // Maven < 3.1
-        Logger logger;
+    private static int parseConcurrency(String value) throws MojoExecutionException {
+        String trimmed = value.trim();
         try {
-            logger = (Logger) FieldUtils.readField(getLog(), "logger", true);
-        } catch (IllegalAccessException e) {
-            throw new MojoExecutionException("Unable to access logger field ", e);
+            if (trimmed.endsWith("C") || trimmed.endsWith("c")) {
+                float factor = Float.parseFloat(trimmed.substring(0, trimmed.length() - 1));
+                if (factor > 0) {
+                    return Math.max(1, (int) Math.ceil(factor * Runtime.getRuntime().availableProcessors()));
+                }
+            } else {
+                int permits = Integer.parseInt(trimmed);
+                if (permits > 0) {
+                    return permits;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // reported below
         }
-        logger.setThreshold(5);
-
-        // Maven >= 3.1
-        ILoggerFactory slf4jLoggerFactory = LoggerFactory.getILoggerFactory();
-        Slf4jConfiguration slf4jConfiguration = Slf4jConfigurationFactory.getConfiguration(slf4jLoggerFactory);
-        slf4jConfiguration.setRootLoggerLevel(Slf4jConfiguration.Level.ERROR);
-        slf4jConfiguration.activate();
+        throw new MojoExecutionException("Invalid maxConcurrent '" + value
+                + "': expected a positive number, optionally followed by 'C' for a multiple of the processors");
     }
 
-    private void lock(String key) throws InterruptedException {
-        synchronized (lockedKeys) {
-            while (!lockedKeys.add(key)) {
-                lockedKeys.wait();
+    private void executeMojoImpl() throws MojoExecutionException {
+        ExecutionEnvironment env = ignoreMavenProject ?
+                executionEnvironment(mavenSession, pluginManager) :
+                executionEnvironment(mavenProject, mavenSession, pluginManager);
+        if (accountResources || cpuBudget > 0 || allocationBudget > 0) {
+            env.accountResources(ResourceAccountings.get(cpuBudget, allocationBudget * 1024 * 1024));
+        }
+        if (interpolateExpressions) {
+            env.interpolateExpressions(ExpressionCache.forSession(mavenSession));
+        }
+        if (bufferOutput || bufferOutputOnFailure) {
+            env.bufferOutput(outputBuffering()
+                    .maxSize(bufferMaxSize * 1024 * 1024)
+                    .onlyOnFailure(bufferOutputOnFailure));
+        }
+        if (!incremental && !cache) {
+            try (ThreadOutput.Scope ignored = quiet ? ThreadOutput.suppress() : null) {
+                executeMojo(plugin, goal, asXpp3Dom(configuration), env);
             }
+            return;
         }
-    }
 
-    private void unlock(String key) {
-        synchronized (lockedKeys) {
-            lockedKeys.remove(key);
-            lockedKeys.notifyAll();
+        UpToDateCheck check = upToDateCheck(stateDirectory);
+        if (inputs != null) {
+            check.inputs(inputs);
+        }
+        if (outputs != null) {
+            check.outputs(outputs);
+        }
+        if (cache) {
+            check.cache(OutputCaches.get(cacheDirectory, cacheMaxSize * 1024 * 1024, cacheHardLinks));
+        }
+        MojoExecutionResult result;
+        try (ThreadOutput.Scope ignored = quiet ? ThreadOutput.suppress() : null) {
+            result = executeMojo(plugin, goal, asXpp3Dom(configuration), env, check);
+        }
+        if (result.getOutcome() == MojoExecutionResult.Outcome.UP_TO_DATE) {
+            getLog().info(String.format("Skipping '%s:%s:%s', it is up to date.", plugin.getGroupId(),
+                    plugin.getArtifactId(), goal));
+        } else if (result.getOutcome() == MojoExecutionResult.Outcome.RESTORED) {
+            getLog().info(String.format("Restored the outputs of '%s:%s:%s' from %s.", plugin.getGroupId(),
+                    plugin.getArtifactId(), goal, cacheDirectory));
         }
     }
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor.plugin;
+
+import org.twdata.maven.mojoexecutor.OutputCache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The output caches used by {@link MojoExecutorMojo}, one per cache directory and settings, so that their statistics
+ * cover the whole session and executions configured differently do not change each other's settings.
+ */
+final class OutputCaches {
+    private static final ConcurrentMap<Key, OutputCache> caches = new ConcurrentHashMap<>();
+
+    private OutputCaches() {
+        throw new AssertionError("non-instantiable");
+    }
+
+    /**
+     * @param directory the cache directory
+     * @param maxBytes  the maximum size of the cache
+     * @param hardLinks whether to restore outputs as hard links
+     * @return the cache of the given directory with the given settings
+     */
+    static OutputCache get(File directory, long maxBytes, boolean hardLinks) {
+        return caches.computeIfAbsent(new Key(directory.getAbsoluteFile(), maxBytes, hardLinks),
+            key -> new OutputCache(key.directory).maxSize(key.maxBytes).hardLinks(key.hardLinks));
+    }
+
+    /**
+     * @return the caches used since the last call
+     */
+    static List<OutputCache> drain() {
+        List<OutputCache> result = new ArrayList<>(caches.values());
+        caches.clear();
+        return result;
+    }
+
+    private static final class Key {
+        private final File directory;
+        private final long maxBytes;
+        private final boolean hardLinks;
+
+        Key(File directory, long maxBytes, boolean hardLinks) {
+            this.directory = directory;
+            this.maxBytes = maxBytes;
+            this.hardLinks = hardLinks;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return maxBytes == key.maxBytes && hardLinks == key.hardLinks && directory.equals(key.directory);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(directory, maxBytes, hardLinks);
+        }
+    }
+}
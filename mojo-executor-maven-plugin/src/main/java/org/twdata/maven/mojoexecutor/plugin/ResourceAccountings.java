@@ -0,0 +1,54 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor.plugin;
+
+import org.twdata.maven.mojoexecutor.ResourceAccounting;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The resource accounting of {@link MojoExecutorMojo}, shared by all its executions so that its totals cover the whole
+ * session.
+ */
+final class ResourceAccountings {
+    private static final AtomicReference<ResourceAccounting> accounting = new AtomicReference<>();
+
+    private ResourceAccountings() {
+        throw new AssertionError("non-instantiable");
+    }
+
+    /**
+     * @param cpuBudgetSeconds the CPU budget of the execution in seconds, or {@code 0} for none
+     * @param allocationBudget the allocation budget of the execution in bytes, or {@code 0} for none
+     * @return the shared accounting, with the given budgets
+     */
+    static ResourceAccounting get(long cpuBudgetSeconds, long allocationBudget) {
+        ResourceAccounting shared = accounting.get();
+        if (shared == null) {
+            accounting.compareAndSet(null, new ResourceAccounting());
+            shared = accounting.get();
+        }
+        return shared.withCpuBudget(cpuBudgetSeconds, TimeUnit.SECONDS).withAllocationBudget(allocationBudget);
+    }
+
+    /**
+     * @return the accounting used since the last call, or {@code null} if there was none
+     */
+    static ResourceAccounting drain() {
+        return accounting.getAndSet(null);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor.plugin;
+
+import org.apache.maven.execution.MojoExecutionEvent;
+import org.apache.maven.execution.MojoExecutionListener;
+import org.apache.maven.plugin.Mojo;
+import org.apache.maven.plugin.logging.Log;
+import org.twdata.maven.mojoexecutor.ThreadOutput;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * Wraps the log of each mojo executed on a thread whose output is suppressed by {@link MojoExecutorMojo}'s quiet mode
+ * (see {@link ThreadOutput#suppressible(Log)}), so that suppressed messages are dropped before Maven's logger formats
+ * them. The wrapper checks the thread on each call, so it can stay in place after the execution. Like the lifecycle
+ * participant, this only takes effect for plugins declared with {@code <extensions>true</extensions>}; otherwise
+ * suppressed output is dropped when it is written.
+ */
+@Named("mojo-executor-suppressed-logs")
+@Singleton
+public class SuppressedMojoLogs implements MojoExecutionListener {
+    @Override
+    public void beforeMojoExecution(MojoExecutionEvent event) {
+        Mojo mojo = event.getMojo();
+        if (mojo != null && ThreadOutput.isSuppressed()) {
+            mojo.setLog(ThreadOutput.suppressible(mojo.getLog()));
+        }
+    }
+
+    @Override
+    public void afterMojoExecutionSuccess(MojoExecutionEvent event) {
+        // the wrapped log stays in place
+    }
+
+    @Override
+    public void afterExecutionFailure(MojoExecutionEvent event) {
+        // the wrapped log stays in place
+    }
+}
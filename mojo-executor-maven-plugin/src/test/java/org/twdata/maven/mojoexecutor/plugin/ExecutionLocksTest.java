@@ -0,0 +1,167 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor.plugin;
+
+import org.apache.maven.model.Plugin;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ExecutionLocksTest {
+    private static final int THREADS = 12;
+    private static final int PERMITS = 3;
+
+    @Test
+    public void aKeyAdmitsAtMostItsPermitsConcurrently() throws Exception {
+        AtomicInteger holders = new AtomicInteger();
+        AtomicInteger maxHolders = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> executions = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                executions.add(executor.submit(() -> {
+                    start.await();
+                    for (int round = 0; round < 5; round++) {
+                        try (ExecutionLocks.Lease lease = ExecutionLocks.acquire("permits", PERMITS, 0)) {
+                            maxHolders.accumulateAndGet(holders.incrementAndGet(), Math::max);
+                            Thread.sleep(2);
+                            holders.decrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> execution : executions) {
+                execution.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue("at most " + PERMITS + " holders, but saw " + maxHolders, maxHolders.get() <= PERMITS);
+        assertThat(holders.get(), is(0));
+        assertThat(statistics("permits").getAcquisitions(), is((long) THREADS * 5));
+    }
+
+    @Test
+    public void waitersAcquireAKeyInArrivalOrder() throws Exception {
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> waiters = new ArrayList<>();
+        ExecutionLocks.Lease held = ExecutionLocks.acquire("fifo", 1, 0);
+        try {
+            for (int i = 0; i < 5; i++) {
+                final int waiter = i;
+                Thread thread = new Thread(() -> {
+                    try (ExecutionLocks.Lease lease = ExecutionLocks.acquire("fifo", 1, 0)) {
+                        order.add(waiter);
+                    } catch (InterruptedException | TimeoutException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+                thread.start();
+                awaitParked(thread);
+                waiters.add(thread);
+            }
+        } finally {
+            held.close();
+        }
+        for (Thread thread : waiters) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+
+        assertThat(order, is(Arrays.asList(0, 1, 2, 3, 4)));
+    }
+
+    @Test
+    public void acquireTimesOutWhileTheKeyIsHeld() throws Exception {
+        try (ExecutionLocks.Lease lease = ExecutionLocks.acquire("timeout", 1, 0)) {
+            long start = System.nanoTime();
+            try {
+                ExecutionLocks.acquire("timeout", 1, 50).close();
+                fail("Expected the held key to time out");
+            } catch (TimeoutException e) {
+                assertThat(e.getMessage(), is("Timed out after 50 ms waiting for 'timeout'"));
+                assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+            }
+        }
+
+        assertThat(statistics("timeout").getTimeouts(), is(1L));
+        ExecutionLocks.acquire("timeout", 1, 50).close();
+    }
+
+    @Test
+    public void lockTimeoutsFailTheExecution() throws Exception {
+        Plugin plugin = new Plugin();
+        plugin.setGroupId("org.example");
+        plugin.setArtifactId("held-plugin");
+        MojoExecutorMojo mojo = new MojoExecutorMojo();
+        set(mojo, "plugin", plugin);
+        set(mojo, "blocking", true);
+        set(mojo, "lockTimeout", 1L);
+        set(mojo, "lockScope", "process");
+
+        try (ExecutionLocks.Lease lease = ExecutionLocks.acquire("org.example:held-plugin", 1, 0)) {
+            mojo.execute();
+            fail("Expected the execution to fail");
+        } catch (MojoExecutionException e) {
+            assertThat(e.getMessage(), containsString("Timed out after 1000 ms waiting for 'org.example:held-plugin'"));
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+    }
+
+    private static void awaitParked(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (thread.getState() != Thread.State.WAITING) {
+            assertTrue("waiter did not block", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private static ExecutionLocks.Statistics statistics(String key) {
+        for (ExecutionLocks.Statistics statistics : ExecutionLocks.drainStatistics()) {
+            if (statistics.getKey().equals(key)) {
+                return statistics;
+            }
+        }
+        throw new AssertionError("No statistics for " + key);
+    }
+
+    private static void set(Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor.plugin;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class FileExecutionLocksTest {
+    private static final String KEY = "org.example:locked-plugin";
+    private static final int ACQUIRED = 0;
+    private static final int TIMED_OUT = 3;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final Log log = new SystemStreamLog();
+
+    @Test
+    public void probingASlotHeldByAnotherThreadKeepsItLockedForOtherProcesses() throws Exception {
+        File directory = temporaryFolder.getRoot();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (FileExecutionLocks.Lease lease = FileExecutionLocks.acquire(directory, KEY, 1, 0, 60000, log)) {
+            Future<?> probe = executor.submit(() -> {
+                try {
+                    FileExecutionLocks.acquire(directory, KEY, 1, 100, 1, log).close();
+                    fail("Expected the slot held by another thread to be skipped");
+                } catch (TimeoutException e) {
+                    // expected
+                }
+                return null;
+            });
+            probe.get(10, TimeUnit.SECONDS);
+
+            assertThat(acquireInOtherProcess(directory, 1), is(TIMED_OUT));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(acquireInOtherProcess(directory, 1), is(ACQUIRED));
+    }
+
+    @Test
+    public void threadsHoldingSeveralSlotsExcludeOtherProcessesFromAllOfThem() throws Exception {
+        File directory = temporaryFolder.getRoot();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<FileExecutionLocks.Lease> first = executor.submit(
+                () -> FileExecutionLocks.acquire(directory, KEY, 2, 0, 0, log));
+            Future<FileExecutionLocks.Lease> second = executor.submit(
+                () -> FileExecutionLocks.acquire(directory, KEY, 2, 0, 0, log));
+            FileExecutionLocks.Lease firstLease = first.get(10, TimeUnit.SECONDS);
+            FileExecutionLocks.Lease secondLease = second.get(10, TimeUnit.SECONDS);
+            assertThat(firstLease, is(not(secondLease)));
+
+            try {
+                FileExecutionLocks.acquire(directory, KEY, 2, 100, 0, log).close();
+                fail("Expected both slots to be held");
+            } catch (TimeoutException e) {
+                // expected
+            }
+            assertThat(acquireInOtherProcess(directory, 2), is(TIMED_OUT));
+
+            firstLease.close();
+            assertThat(acquireInOtherProcess(directory, 2), is(ACQUIRED));
+            secondLease.close();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return {@link #ACQUIRED} or {@link #TIMED_OUT}, as reported by a new JVM competing for a slot of {@link #KEY}
+     */
+    private static int acquireInOtherProcess(File directory, int permits) throws Exception {
+        Process process = new ProcessBuilder(
+            new File(System.getProperty("java.home"), "bin/java").getPath(),
+            "-cp", System.getProperty("java.class.path"),
+            OtherProcess.class.getName(), directory.getPath(), Integer.toString(permits))
+            .inheritIO()
+            .start();
+        if (!process.waitFor(60, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            fail("The other process did not finish");
+        }
+        return process.exitValue();
+    }
+
+    public static final class OtherProcess {
+        public static void main(String[] args) throws Exception {
+            File directory = new File(args[0]);
+            int permits = Integer.parseInt(args[1]);
+            int status;
+            try (FileExecutionLocks.Lease lease = FileExecutionLocks.acquire(directory, KEY, permits, 200, 0,
+                    new SystemStreamLog())) {
+                status = ACQUIRED;
+            } catch (TimeoutException e) {
+                status = TIMED_OUT;
+            }
+            System.exit(status);
+        }
+    }
+}
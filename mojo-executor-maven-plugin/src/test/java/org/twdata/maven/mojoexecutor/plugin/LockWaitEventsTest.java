@@ -0,0 +1,40 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor.plugin;
+
+import jdk.jfr.Recording;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class LockWaitEventsTest {
+    @Test
+    public void eventsAreOnlyCreatedWhileARecordingEnablesThem() {
+        assertThat(LockWaitEvents.begin(), is(nullValue()));
+
+        try (Recording recording = new Recording()) {
+            recording.enable(LockWaitEvents.BlockingLockWaitEvent.class);
+            recording.start();
+            Object event = LockWaitEvents.begin();
+            assertThat(event, instanceOf(LockWaitEvents.BlockingLockWaitEvent.class));
+            LockWaitEvents.commit(event, "org.example:example-maven-plugin", 1, false, true);
+        }
+        assertThat(LockWaitEvents.begin(), is(nullValue()));
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor.plugin;
+
+import org.junit.After;
+import org.junit.Test;
+import org.twdata.maven.mojoexecutor.OutputCache;
+
+import java.io.File;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class OutputCachesTest {
+    private final File directory = new File("target/output-caches-test");
+
+    @After
+    public void drain() {
+        OutputCaches.drain();
+    }
+
+    @Test
+    public void executionsWithTheSameSettingsShareACache() {
+        OutputCache cache = OutputCaches.get(directory, 1024, false);
+
+        assertThat(OutputCaches.get(directory.getAbsoluteFile(), 1024, false), sameInstance(cache));
+    }
+
+    @Test
+    public void executionsWithOtherSettingsDoNotChangeTheCacheOfOthers() {
+        OutputCache small = OutputCaches.get(directory, 1024, false);
+        OutputCache linked = OutputCaches.get(directory, 1024, true);
+        OutputCache large = OutputCaches.get(directory, 4096, false);
+
+        assertThat(linked, not(sameInstance(small)));
+        assertThat(large, not(sameInstance(small)));
+        assertThat(OutputCaches.get(directory, 1024, false), sameInstance(small));
+        assertThat(OutputCaches.drain().size(), is(3));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor.plugin;
+
+import org.apache.maven.execution.MojoExecutionEvent;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+import org.twdata.maven.mojoexecutor.ThreadOutput;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SuppressedMojoLogsTest {
+    private final SuppressedMojoLogs listener = new SuppressedMojoLogs();
+
+    @Test
+    public void mojosExecutedOnSuppressedThreadsNeitherFormatNorLogMessages() {
+        RecordingLog log = new RecordingLog();
+        ListingMojo mojo = new ListingMojo();
+        mojo.setLog(log);
+
+        try (ThreadOutput.Scope ignored = ThreadOutput.suppress()) {
+            listener.beforeMojoExecution(new MojoExecutionEvent(null, null, null, mojo));
+            mojo.execute();
+        }
+        assertThat(mojo.formatted, is(0));
+        assertThat(log.messages, is(Collections.<String>emptyList()));
+
+        mojo.execute();
+        assertThat(mojo.formatted, is(1));
+        assertThat(log.messages, is(Arrays.asList("resolved 3 files")));
+    }
+
+    @Test
+    public void mojosExecutedOnOtherThreadsKeepTheirLog() {
+        RecordingLog log = new RecordingLog();
+        ListingMojo mojo = new ListingMojo();
+        mojo.setLog(log);
+
+        listener.beforeMojoExecution(new MojoExecutionEvent(null, null, null, mojo));
+
+        assertThat(mojo.getLog(), sameInstance(log));
+    }
+
+    private static final class ListingMojo extends AbstractMojo {
+        int formatted;
+
+        @Override
+        public void execute() {
+            if (getLog().isInfoEnabled()) {
+                formatted++;
+                getLog().info(String.format("resolved %d files", 3));
+            }
+        }
+    }
+
+    private static final class RecordingLog extends SystemStreamLog {
+        final List<String> messages = new ArrayList<>();
+
+        @Override
+        public void info(CharSequence content) {
+            messages.add(content.toString());
+        }
+    }
+}
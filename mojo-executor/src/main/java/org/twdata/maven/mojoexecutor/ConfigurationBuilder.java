@@ -0,0 +1,223 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Builds a mojo configuration by writing {@link Xpp3Dom} nodes directly, for configurations too large for the
+ * {@link MojoExecutor.Element} DSL, which builds an intermediate tree and copies it.
+ * <p>
+ * The builder keeps a current element, initially the {@code <configuration>} root: {@link #element(String, String)}
+ * and the bulk methods add children to it, {@link #start(String)} adds a child and makes it current, and
+ * {@link #end()} returns to its parent:
+ *
+ * <pre>
+ * Xpp3Dom configuration = configurationBuilder()
+ *     .element("outputDirectory", "${project.build.directory}/classes")
+ *     .start("includes").elements("include", patterns).end()
+ *     .start("systemPropertyVariables").entries(properties).end()
+ *     .build();
+ * </pre>
+ * <p>
+ * Bulk additions consume their source once, without collecting it first, so a {@link Stream} of file names can be
+ * written straight into the configuration. A builder is not thread-safe.
+ *
+ * @see MojoExecutor#configurationBuilder()
+ */
+public final class ConfigurationBuilder {
+    private final Xpp3Dom root;
+    private Xpp3Dom[] path = new Xpp3Dom[8];
+    private int depth;
+
+    ConfigurationBuilder(String rootName) {
+        root = new Xpp3Dom(rootName);
+        path[0] = root;
+    }
+
+    /**
+     * Adds an element with a textual body to the current element.
+     *
+     * @param name  the element name
+     * @param value the element text value, may be {@code null}
+     * @return this builder
+     */
+    public ConfigurationBuilder element(String name, String value) {
+        Xpp3Dom child = new Xpp3Dom(name);
+        if (value != null) {
+            child.setValue(value);
+        }
+        path[depth].addChild(child);
+        return this;
+    }
+
+    /**
+     * Adds an element for each value to the current element, such as the {@code <include>}s of an
+     * {@code <includes>} list.
+     *
+     * @param name   the name of each element
+     * @param values the text values, converted with {@link String#valueOf(Object)} unless {@code null}
+     * @return this builder
+     */
+    public ConfigurationBuilder elements(String name, Iterable<?> values) {
+        return elements(name, values.iterator());
+    }
+
+    /**
+     * Adds an element for each value of the stream to the current element.
+     *
+     * @param name   the name of each element
+     * @param values the text values, converted with {@link String#valueOf(Object)} unless {@code null}
+     * @return this builder
+     * @see #elements(String, Iterable)
+     */
+    public ConfigurationBuilder elements(String name, Stream<?> values) {
+        return elements(name, values.iterator());
+    }
+
+    private ConfigurationBuilder elements(String name, Iterator<?> values) {
+        Xpp3Dom parent = path[depth];
+        while (values.hasNext()) {
+            Object value = values.next();
+            Xpp3Dom child = new Xpp3Dom(name);
+            if (value != null) {
+                child.setValue(String.valueOf(value));
+            }
+            parent.addChild(child);
+        }
+        return this;
+    }
+
+    /**
+     * Adds an element for each entry to the current element, named by the key and with the value as its body, such as
+     * system properties or environment variables.
+     *
+     * @param entries the entries, whose values are converted with {@link String#valueOf(Object)} unless {@code null}
+     * @return this builder
+     */
+    public ConfigurationBuilder entries(Map<String, ?> entries) {
+        Xpp3Dom parent = path[depth];
+        for (Map.Entry<String, ?> entry : entries.entrySet()) {
+            Xpp3Dom child = new Xpp3Dom(entry.getKey());
+            if (entry.getValue() != null) {
+                child.setValue(String.valueOf(entry.getValue()));
+            }
+            parent.addChild(child);
+        }
+        return this;
+    }
+
+    /**
+     * Calls the given action with this builder for each item, to add structured elements such as
+     * {@code <artifactItem>}s. The action must leave the current element as it found it.
+     *
+     * @param items  the items
+     * @param action the action adding the elements of an item
+     * @param <T>    the type of the items
+     * @return this builder
+     */
+    public <T> ConfigurationBuilder forEach(Iterable<T> items, BiConsumer<ConfigurationBuilder, ? super T> action) {
+        int expectedDepth = depth;
+        for (T item : items) {
+            action.accept(this, item);
+            if (depth != expectedDepth) {
+                throw new IllegalStateException("Unbalanced start() and end() for " + item);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Adds an existing element to the current element.
+     *
+     * @param child the element, which must not have another parent
+     * @return this builder
+     */
+    public ConfigurationBuilder child(Xpp3Dom child) {
+        path[depth].addChild(child);
+        return this;
+    }
+
+    /**
+     * Adds an element to the current element and makes it the current element, until {@link #end()}.
+     *
+     * @param name the element name
+     * @return this builder
+     */
+    public ConfigurationBuilder start(String name) {
+        Xpp3Dom child = new Xpp3Dom(name);
+        path[depth].addChild(child);
+        if (++depth == path.length) {
+            path = Arrays.copyOf(path, depth * 2);
+        }
+        path[depth] = child;
+        return this;
+    }
+
+    /**
+     * Sets an attribute of the current element.
+     *
+     * @param name  the attribute name
+     * @param value the attribute value
+     * @return this builder
+     */
+    public ConfigurationBuilder attribute(String name, String value) {
+        path[depth].setAttribute(name, value);
+        return this;
+    }
+
+    /**
+     * Sets the textual body of the current element.
+     *
+     * @param value the element text value
+     * @return this builder
+     */
+    public ConfigurationBuilder value(String value) {
+        path[depth].setValue(value);
+        return this;
+    }
+
+    /**
+     * Makes the parent of the current element the current element.
+     *
+     * @return this builder
+     * @throws IllegalStateException if the current element is the root
+     */
+    public ConfigurationBuilder end() {
+        if (depth == 0) {
+            throw new IllegalStateException("end() without start()");
+        }
+        path[depth--] = null;
+        return this;
+    }
+
+    /**
+     * @return the configuration
+     * @throws IllegalStateException if an element was started but not ended
+     */
+    public Xpp3Dom build() {
+        if (depth != 0) {
+            throw new IllegalStateException("<" + path[depth].getName() + "> was not ended");
+        }
+        return root;
+    }
+}
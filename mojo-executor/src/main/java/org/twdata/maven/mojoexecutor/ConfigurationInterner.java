@@ -0,0 +1,235 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hash-conses configurations into immutable trees, so that equal elements are shared between all configurations.
+ * <p>
+ * Names, values and attributes are interned, and each element is replaced by the canonical element with the same
+ * content, whose children are canonical themselves. Equal subtrees are then the same instance, which makes comparing
+ * interned configurations cheap, and many executions with similar configurations hold a single copy of what they have
+ * in common. Canonical elements are held weakly, so they are discarded with the last configuration using them, and
+ * looked up without a global lock, so that parallel builds intern concurrently. Executions get a plain copy of an
+ * interned tree, which they may modify.
+ */
+final class ConfigurationInterner {
+    private static final ConcurrentMap<Canonical, Canonical> canonical = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Interned> discarded = new ReferenceQueue<>();
+
+    private ConfigurationInterner() {
+        throw new AssertionError("non-instantiable");
+    }
+
+    /**
+     * @return the immutable, shared tree equal to the given configuration, which is not modified
+     */
+    static Xpp3Dom intern(Xpp3Dom configuration) {
+        if (isInterned(configuration)) {
+            return configuration;
+        }
+        // children are interned before their parent, without recursion
+        Deque<Pending> pending = new ArrayDeque<>();
+        pending.push(new Pending(configuration));
+        while (true) {
+            Pending element = pending.peek();
+            if (element.next < element.children.length) {
+                Xpp3Dom child = element.children[element.next];
+                if (isInterned(child)) {
+                    element.interned[element.next++] = child;
+                } else {
+                    pending.push(new Pending(child));
+                }
+                continue;
+            }
+            pending.pop();
+            Xpp3Dom interned = canonical(new Interned(element.source, element.interned));
+            Pending parent = pending.peek();
+            if (parent == null) {
+                return interned;
+            }
+            parent.interned[parent.next++] = interned;
+        }
+    }
+
+    /**
+     * @return whether the given configuration was created by {@link #intern(Xpp3Dom)}
+     */
+    static boolean isInterned(Xpp3Dom configuration) {
+        return configuration instanceof Interned;
+    }
+
+    private static Xpp3Dom canonical(Interned element) {
+        expungeDiscarded();
+        Canonical candidate = new Canonical(element, discarded);
+        while (true) {
+            Canonical existing = canonical.putIfAbsent(candidate, candidate);
+            if (existing == null) {
+                return element;
+            }
+            Interned result = existing.get();
+            if (result != null) {
+                return result;
+            }
+            // discarded since it was found
+            canonical.remove(existing, existing);
+        }
+    }
+
+    private static void expungeDiscarded() {
+        for (Object discardedElement; (discardedElement = discarded.poll()) != null; ) {
+            canonical.remove(discardedElement, discardedElement);
+        }
+    }
+
+    private static String intern(String value) {
+        return value != null ? value.intern() : null;
+    }
+
+    /**
+     * An element whose children are still to be interned.
+     */
+    private static final class Pending {
+        final Xpp3Dom source;
+        final Xpp3Dom[] children;
+        final Xpp3Dom[] interned;
+        int next;
+
+        Pending(Xpp3Dom source) {
+            this.source = source;
+            this.children = source.getChildren();
+            this.interned = new Xpp3Dom[children.length];
+        }
+    }
+
+    /**
+     * A weak reference to a canonical element, equal to the references to equal elements while it is not cleared.
+     */
+    private static final class Canonical extends WeakReference<Interned> {
+        private final int hash;
+
+        Canonical(Interned element, ReferenceQueue<Interned> queue) {
+            super(element, queue);
+            this.hash = element.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Canonical) || ((Canonical) obj).hash != hash) {
+                return false;
+            }
+            Interned element = get();
+            return element != null && element.equals(((Canonical) obj).get());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * An immutable element, which may be the child of several parents and therefore has none. Its hash code is
+     * computed once, and equality stops at the first shared child, so both take the number of children rather than
+     * the size of the tree.
+     */
+    private static final class Interned extends Xpp3Dom {
+        private final int hash;
+
+        Interned(Xpp3Dom source, Xpp3Dom[] children) {
+            super(intern(source.getName()));
+            super.setValue(intern(source.getValue()));
+            for (String name : source.getAttributeNames()) {
+                super.setAttribute(intern(name), intern(source.getAttribute(name)));
+            }
+            for (Xpp3Dom child : children) {
+                super.addChild(child);
+            }
+            this.hash = super.hashCode();
+        }
+
+        @Override
+        public void setValue(String value) {
+            throw immutable();
+        }
+
+        @Override
+        public void setAttribute(String name, String value) {
+            throw immutable();
+        }
+
+        // overrides the method added in later versions of plexus-utils
+        public boolean removeAttribute(String name) {
+            throw immutable();
+        }
+
+        @Override
+        public void addChild(Xpp3Dom xpp3Dom) {
+            throw immutable();
+        }
+
+        @Override
+        public void removeChild(int i) {
+            throw immutable();
+        }
+
+        // overrides the method added in later versions of plexus-utils
+        public void removeChild(Xpp3Dom child) {
+            throw immutable();
+        }
+
+        @Override
+        public Xpp3Dom getParent() {
+            return null;
+        }
+
+        @Override
+        public void setParent(Xpp3Dom parent) {
+            // shared between parents
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj instanceof Interned && ((Interned) obj).hash != hash) {
+                return false;
+            }
+            return super.equals(obj);
+        }
+
+        private static UnsupportedOperationException immutable() {
+            return new UnsupportedOperationException("Interned configurations are immutable, copy them to modify");
+        }
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates all mojo executions of a Maven session per plugin goal: the number of executions and failures, and the
+ * total, percentile and maximum durations.
+ * <p>
+ * Nothing is recorded until metrics are enabled for the session by {@link #forSession(MavenSession)}, as the lifecycle
+ * participant of the plugin does. Execution environments created afterwards look the metrics up once and record into
+ * them without locking: durations go to log-linear histograms, so recording costs a few atomic additions regardless of
+ * the number of executions, and percentiles are accurate to about 6%. Like the {@link PluginDescriptorCache}, the
+ * metrics are shared by all clones of a session. {@link #writeJson(Writer)} writes them for build analytics.
+ *
+ * @see MojoExecutor.ExecutionEnvironment#recordMetrics(ExecutionMetrics)
+ */
+public final class ExecutionMetrics {
+    private static final Map<Object, ExecutionMetrics> metrics = new WeakHashMap<>();
+    private static volatile boolean enabled;
+
+    private final ConcurrentMap<String, Goal> goals = new ConcurrentHashMap<>();
+
+    ExecutionMetrics() {
+    }
+
+    /**
+     * Returns the metrics of the given session, enabling them on first use. Execution environments of the session
+     * created afterwards record their executions into them.
+     *
+     * @param session the Maven session. Must not be {@code null}.
+     * @return the metrics shared by the session and all of its clones
+     */
+    public static ExecutionMetrics forSession(MavenSession session) {
+        Object scope = scope(session);
+        synchronized (metrics) {
+            ExecutionMetrics sessionMetrics = metrics.get(scope);
+            if (sessionMetrics == null) {
+                sessionMetrics = new ExecutionMetrics();
+                metrics.put(scope, sessionMetrics);
+                enabled = true;
+            }
+            return sessionMetrics;
+        }
+    }
+
+    /**
+     * @return the metrics of the given session, or {@code null} if they were not enabled
+     */
+    static ExecutionMetrics ifEnabled(MavenSession session) {
+        // skips the lookup as long as no session enabled metrics, which is the case without the lifecycle participant
+        if (!enabled) {
+            return null;
+        }
+        Object scope = scope(session);
+        synchronized (metrics) {
+            return metrics.get(scope);
+        }
+    }
+
+    /**
+     * Removes the metrics of the given session, so that later executions start new ones.
+     *
+     * @param session the Maven session
+     * @return the metrics of the session, or {@code null} if they were not enabled
+     */
+    public static ExecutionMetrics close(MavenSession session) {
+        Object scope = scope(session);
+        synchronized (metrics) {
+            return metrics.remove(scope);
+        }
+    }
+
+    private static Object scope(MavenSession session) {
+        // clones of a session share the repository session, so prefer it as the scope
+        Object repositorySession = MavenCompatibilityHelper.getRepositorySession(session);
+        return repositorySession != null ? repositorySession : session;
+    }
+
+    /**
+     * Adds a completed execution.
+     */
+    void record(MojoExecutionResult result, boolean failed) {
+        Plugin plugin = result.getPlugin();
+        String mojo = plugin.getGroupId() + ":" + plugin.getArtifactId() + ":" + result.getGoal();
+        Goal goal = goals.get(mojo);
+        if (goal == null) {
+            goal = goals.computeIfAbsent(mojo, Goal::new);
+        }
+        goal.record(result.getDurationNanos(), failed);
+    }
+
+    /**
+     * @return the metrics per plugin goal, the longest total duration first
+     */
+    public List<Goal> getGoals() {
+        List<Goal> sorted = new ArrayList<>(goals.values());
+        sorted.sort(Comparator.comparingLong(Goal::getTotalNanos).reversed());
+        return sorted;
+    }
+
+    /**
+     * Writes the metrics as a JSON object with the total number of executions and failures, and an entry per plugin
+     * goal with durations in milliseconds.
+     *
+     * @param writer the writer, which is not closed
+     * @throws IOException if writing fails
+     */
+    public void writeJson(Writer writer) throws IOException {
+        List<Goal> sorted = getGoals();
+        long executions = 0;
+        long failures = 0;
+        for (Goal goal : sorted) {
+            executions += goal.getCount();
+            failures += goal.getFailures();
+        }
+        StringBuilder json = new StringBuilder(256 + 192 * sorted.size());
+        json.append("{\n  \"executions\": ").append(executions)
+            .append(",\n  \"failures\": ").append(failures)
+            .append(",\n  \"goals\": [");
+        for (int i = 0; i < sorted.size(); i++) {
+            Goal goal = sorted.get(i);
+            Histogram.Snapshot durations = goal.durations.snapshot();
+            json.append(i == 0 ? "\n" : ",\n").append("    {\"mojo\": \"").append(escape(goal.mojo))
+                .append("\", \"count\": ").append(goal.getCount())
+                .append(", \"failures\": ").append(goal.getFailures())
+                .append(", \"totalMs\": ").append(millis(goal.getTotalNanos()))
+                .append(", \"p50Ms\": ").append(millis(Math.min(durations.percentile(50), goal.getMaxNanos())))
+                .append(", \"p95Ms\": ").append(millis(Math.min(durations.percentile(95), goal.getMaxNanos())))
+                .append(", \"p99Ms\": ").append(millis(Math.min(durations.percentile(99), goal.getMaxNanos())))
+                .append(", \"maxMs\": ").append(millis(goal.getMaxNanos()))
+                .append('}');
+        }
+        json.append(sorted.isEmpty() ? "]\n}\n" : "\n  ]\n}\n");
+        writer.write(json.toString());
+    }
+
+    /**
+     * Writes the metrics as JSON to the given file, creating its parent directories.
+     *
+     * @param file the file, overwritten if it exists
+     * @throws IOException if writing fails
+     * @see #writeJson(Writer)
+     */
+    public void writeJson(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writeJson(writer);
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * The executions of a plugin goal.
+     */
+    public static final class Goal {
+        private final String mojo;
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final Histogram durations = new Histogram();
+
+        private Goal(String mojo) {
+            this.mojo = mojo;
+        }
+
+        private void record(long nanos, boolean failed) {
+            if (failed) {
+                failures.increment();
+            }
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            durations.record(nanos);
+        }
+
+        /**
+         * @return the plugin goal as {@code groupId:artifactId:goal}
+         */
+        public String getMojo() {
+            return mojo;
+        }
+
+        /**
+         * @return the number of executions, including failed ones
+         */
+        public long getCount() {
+            return durations.count();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        /**
+         * @param percentile the percentile, between 0 and 100
+         * @param unit       the time unit
+         * @return the duration that the given percentage of executions did not exceed, accurate to about 6%
+         */
+        public long getPercentile(double percentile, TimeUnit unit) {
+            long nanos = Math.min(durations.snapshot().percentile(percentile), getMaxNanos());
+            return unit.convert(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString() {
+            return mojo + ": " + getCount() + " executions, " + getFailures() + " failed, "
+                + TimeUnit.NANOSECONDS.toMillis(getTotalNanos()) + " ms";
+        }
+    }
+
+    /**
+     * A lock-free histogram of durations in nanoseconds. Values below 16 have a bucket each; above, each power of two
+     * is split into 16 linear buckets, bounding the relative error of a bucket to 1/16.
+     */
+    static final class Histogram {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        void record(long value) {
+            counts.incrementAndGet(bucket(Math.max(0, value)));
+        }
+
+        long count() {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += counts.get(i);
+            }
+            return count;
+        }
+
+        /**
+         * @return a copy of the counts, consistent for each bucket but not across buckets while recording continues
+         */
+        Snapshot snapshot() {
+            long[] copy = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                copy[i] = counts.get(i);
+                total += copy[i];
+            }
+            return new Snapshot(copy, total);
+        }
+
+        static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int shift = exponent - SUB_BUCKET_BITS;
+            return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+        }
+
+        /**
+         * @return the largest value of the given bucket
+         */
+        static long highestValue(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+            return lowest + ((1L << shift) - 1);
+        }
+
+        static final class Snapshot {
+            private final long[] counts;
+            private final long total;
+
+            private Snapshot(long[] counts, long total) {
+                this.counts = counts;
+                this.total = total;
+            }
+
+            /**
+             * @return the highest value of the bucket holding the given percentile, or 0 if nothing was recorded
+             */
+            long percentile(double percentile) {
+                if (total == 0) {
+                    return 0;
+                }
+                long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, percentile) / 100));
+                long seen = 0;
+                for (int i = 0; i < counts.length; i++) {
+                    seen += counts[i];
+                    if (seen >= rank) {
+                        return highestValue(i);
+                    }
+                }
+                return highestValue(counts.length - 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
+import org.apache.maven.plugin.descriptor.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.component.configurator.expression.ExpressionEvaluationException;
+import org.codehaus.plexus.component.configurator.expression.ExpressionEvaluator;
+import org.codehaus.plexus.configuration.PlexusConfiguration;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+import java.io.File;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Resolves the {@code ${...}} expressions of executed configurations once per project and expression, instead of
+ * letting Maven evaluate them for each parameter of each execution.
+ * <p>
+ * Expressions are evaluated like Maven does, and only replaced when they resolve to a string, number, boolean or file.
+ * Expressions that cannot be resolved or resolve to other objects, such as {@code ${project.artifacts}}, and those
+ * depending on the execution, such as {@code ${mojoExecution}} or {@code ${plugin}}, are left for Maven, as are the
+ * parameters of type {@link PlexusConfiguration}, which Maven passes to the mojo unevaluated. Resolved values are kept
+ * per project instance for the whole session, so properties set by mojos after an expression was first resolved are
+ * only seen after {@link #invalidate(MavenProject)}. Like the {@link ExecutionMetrics}, the cache is shared by all
+ * clones of a session.
+ *
+ * @see MojoExecutor.ExecutionEnvironment#interpolateExpressions(ExpressionCache)
+ */
+public final class ExpressionCache {
+    static final int REPORTED_EXPRESSIONS = 10;
+
+    private static final Map<Object, ExpressionCache> caches = new WeakHashMap<>();
+    private static final Object UNRESOLVED = new Object();
+
+    // projects are compared by identity, since forked projects are clones equal to the project they were forked from
+    private final Map<ProjectKey, ConcurrentMap<String, Object>> values = new HashMap<>();
+    private final ReferenceQueue<MavenProject> discardedProjects = new ReferenceQueue<>();
+    private final ConcurrentMap<String, Expression> expressions = new ConcurrentHashMap<>();
+
+    ExpressionCache() {
+    }
+
+    /**
+     * Returns the cache of the given session, creating it on first use.
+     *
+     * @param session the Maven session. Must not be {@code null}.
+     * @return the cache shared by the session and all of its clones
+     */
+    public static ExpressionCache forSession(MavenSession session) {
+        Object scope = scope(session);
+        synchronized (caches) {
+            ExpressionCache cache = caches.get(scope);
+            if (cache == null) {
+                cache = new ExpressionCache();
+                caches.put(scope, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Removes the cache of the given session, so that later executions start a new one.
+     *
+     * @param session the Maven session
+     * @return the cache of the session, or {@code null} if it was not used
+     */
+    public static ExpressionCache close(MavenSession session) {
+        Object scope = scope(session);
+        synchronized (caches) {
+            return caches.remove(scope);
+        }
+    }
+
+    private static Object scope(MavenSession session) {
+        // clones of a session share the repository session, so prefer it as the scope
+        Object repositorySession = MavenCompatibilityHelper.getRepositorySession(session);
+        return repositorySession != null ? repositorySession : session;
+    }
+
+    /**
+     * Discards the values resolved for the given project, for example after a mojo changed its properties.
+     *
+     * @param project the project
+     */
+    public void invalidate(MavenProject project) {
+        synchronized (values) {
+            expungeDiscardedProjects();
+            values.remove(new ProjectKey(project, null));
+        }
+    }
+
+    /**
+     * @return the evaluated expressions, the most evaluation time first
+     */
+    public List<Expression> getExpressions() {
+        List<Expression> sorted = new ArrayList<>(expressions.values());
+        sorted.sort(Comparator.comparingLong(Expression::getEvaluationNanos).thenComparingLong(Expression::getHits)
+            .reversed());
+        return sorted;
+    }
+
+    /**
+     * Returns the configuration with the expressions resolved for the given project. Mutable configurations are
+     * modified in place, interned ones are copied if any expression is resolved. The parameters of the mojo of type
+     * {@link PlexusConfiguration} are left as they are.
+     *
+     * @param mojoDescriptor the mojo, whose parameters may be {@code null} if it declares none
+     * @param evaluator creates the evaluator of the execution, only called if an expression is not cached
+     */
+    Xpp3Dom interpolate(Xpp3Dom configuration, MojoDescriptor mojoDescriptor, MavenProject project,
+                        Supplier<ExpressionEvaluator> evaluator) {
+        Interpolation interpolation = new Interpolation(values(project), evaluator);
+        Set<String> unevaluated = unevaluatedParameters(mojoDescriptor);
+        Map<String, String> interpolated = new HashMap<>();
+        Deque<Xpp3Dom> pending = new ArrayDeque<>();
+        pending.push(configuration);
+        while (!pending.isEmpty()) {
+            Xpp3Dom dom = pending.pop();
+            interpolation.collect(dom.getValue(), interpolated);
+            interpolation.collect(dom.getAttribute("default-value"), interpolated);
+            for (Xpp3Dom child : dom.getChildren()) {
+                if (dom != configuration || !unevaluated.contains(child.getName())) {
+                    pending.push(child);
+                }
+            }
+        }
+        if (interpolated.isEmpty()) {
+            return configuration;
+        }
+
+        Xpp3Dom result = ConfigurationInterner.isInterned(configuration) ? new Xpp3Dom(configuration) : configuration;
+        pending.push(result);
+        while (!pending.isEmpty()) {
+            Xpp3Dom dom = pending.pop();
+            String value = dom.getValue();
+            if (value != null && interpolated.containsKey(value)) {
+                dom.setValue(interpolated.get(value));
+            }
+            String defaultValue = dom.getAttribute("default-value");
+            if (defaultValue != null && interpolated.containsKey(defaultValue)) {
+                dom.setAttribute("default-value", interpolated.get(defaultValue));
+            }
+            for (Xpp3Dom child : dom.getChildren()) {
+                if (dom != result || !unevaluated.contains(child.getName())) {
+                    pending.push(child);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the names and aliases of the parameters that Maven passes to the mojo as they are configured
+     */
+    private static Set<String> unevaluatedParameters(MojoDescriptor mojoDescriptor) {
+        List<Parameter> parameters = mojoDescriptor != null ? mojoDescriptor.getParameters() : null;
+        if (parameters == null) {
+            return Collections.emptySet();
+        }
+        Set<String> names = new HashSet<>();
+        for (Parameter parameter : parameters) {
+            if (PlexusConfiguration.class.getName().equals(parameter.getType())) {
+                names.add(parameter.getName());
+                if (parameter.getAlias() != null) {
+                    names.add(parameter.getAlias());
+                }
+            }
+        }
+        return names;
+    }
+
+    private ConcurrentMap<String, Object> values(MavenProject project) {
+        synchronized (values) {
+            expungeDiscardedProjects();
+            ProjectKey key = new ProjectKey(project, discardedProjects);
+            ConcurrentMap<String, Object> projectValues = values.get(key);
+            if (projectValues == null) {
+                projectValues = new ConcurrentHashMap<>();
+                values.put(key, projectValues);
+            }
+            return projectValues;
+        }
+    }
+
+    private void expungeDiscardedProjects() {
+        for (Object discardedProject; (discardedProject = discardedProjects.poll()) != null; ) {
+            values.remove(discardedProject);
+        }
+    }
+
+    /**
+     * @return a table of the {@value #REPORTED_EXPRESSIONS} most expensive expressions
+     */
+    @Override
+    public String toString() {
+        StringBuilder table = new StringBuilder(String.format(Locale.ROOT, "%10s %6s %8s  %s",
+            "eval us", "evals", "hits", "expression"));
+        List<Expression> sorted = getExpressions();
+        for (Expression expression : sorted.subList(0, Math.min(REPORTED_EXPRESSIONS, sorted.size()))) {
+            table.append(System.lineSeparator()).append(expression);
+        }
+        return table.toString();
+    }
+
+    /**
+     * A weak reference to a project, equal to the references to the same project instance while it is not cleared.
+     */
+    private static final class ProjectKey extends WeakReference<MavenProject> {
+        private final int hash;
+
+        ProjectKey(MavenProject project, ReferenceQueue<MavenProject> queue) {
+            super(project, queue);
+            this.hash = System.identityHashCode(project);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof ProjectKey) || ((ProjectKey) obj).hash != hash) {
+                return false;
+            }
+            MavenProject project = get();
+            return project != null && project == ((ProjectKey) obj).get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * The expressions of one configuration, resolved against the values of its project.
+     */
+    private final class Interpolation {
+        private final ConcurrentMap<String, Object> projectValues;
+        private final Supplier<ExpressionEvaluator> evaluatorFactory;
+        private ExpressionEvaluator evaluator;
+
+        Interpolation(ConcurrentMap<String, Object> projectValues, Supplier<ExpressionEvaluator> evaluatorFactory) {
+            this.projectValues = projectValues;
+            this.evaluatorFactory = evaluatorFactory;
+        }
+
+        void collect(String value, Map<String, String> interpolated) {
+            // $${ escapes an expression, which Maven resolves
+            if (value == null || value.indexOf("${") < 0 || value.contains("$$") || interpolated.containsKey(value)) {
+                return;
+            }
+            StringBuilder result = null;
+            int copied = 0;
+            int start = value.indexOf("${");
+            while (start >= 0) {
+                int end = value.indexOf('}', start + 2);
+                if (end < 0) {
+                    break;
+                }
+                String resolved = resolve(value.substring(start + 2, end));
+                if (resolved != null) {
+                    if (result == null) {
+                        result = new StringBuilder(value.length());
+                    }
+                    result.append(value, copied, start).append(resolved);
+                    copied = end + 1;
+                }
+                start = value.indexOf("${", end + 1);
+            }
+            if (result != null) {
+                interpolated.put(value, result.append(value, copied, value.length()).toString());
+            }
+        }
+
+        private String resolve(String expression) {
+            if (expression.isEmpty() || expression.contains("${") || isExecutionSpecific(expression)) {
+                return null;
+            }
+            Expression statistics = expressions.get(expression);
+            if (statistics == null) {
+                statistics = expressions.computeIfAbsent(expression, Expression::new);
+            }
+            Object cached = projectValues.get(expression);
+            if (cached != null) {
+                statistics.hits.increment();
+                return cached != UNRESOLVED ? (String) cached : null;
+            }
+
+            if (evaluator == null) {
+                evaluator = evaluatorFactory.get();
+            }
+            long start = System.nanoTime();
+            String resolved;
+            try {
+                resolved = inline(evaluator.evaluate("${" + expression + "}"));
+            } catch (ExpressionEvaluationException | RuntimeException e) {
+                resolved = null;
+            }
+            statistics.record(System.nanoTime() - start);
+            projectValues.putIfAbsent(expression, resolved != null ? resolved : UNRESOLVED);
+            return resolved;
+        }
+    }
+
+    private static boolean isExecutionSpecific(String expression) {
+        String root = expression.indexOf('.') > 0 ? expression.substring(0, expression.indexOf('.')) : expression;
+        return root.equals("mojoExecution") || root.equals("mojo") || root.equals("plugin");
+    }
+
+    /**
+     * @return the value as written in a configuration, or {@code null} if Maven must evaluate the expression itself
+     */
+    private static String inline(Object value) {
+        if (value instanceof String) {
+            String string = (String) value;
+            return !string.isEmpty() && !string.contains("${") ? string : null;
+        } else if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return value.toString();
+        } else if (value instanceof File) {
+            return ((File) value).getPath();
+        }
+        return null;
+    }
+
+    /**
+     * The evaluations of an expression for all projects, and the executions reusing their results.
+     */
+    public static final class Expression {
+        private final String expression;
+        private final LongAdder evaluations = new LongAdder();
+        private final LongAdder evaluationNanos = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+
+        private Expression(String expression) {
+            this.expression = expression;
+        }
+
+        private void record(long nanos) {
+            evaluations.increment();
+            evaluationNanos.add(nanos);
+        }
+
+        /**
+         * @return the expression, without the enclosing <code>${</code> and <code>}</code>
+         */
+        public String getExpression() {
+            return expression;
+        }
+
+        public long getEvaluations() {
+            return evaluations.sum();
+        }
+
+        public long getEvaluationNanos() {
+            return evaluationNanos.sum();
+        }
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%10d %6d %8d  ${%s}",
+                TimeUnit.NANOSECONDS.toMicros(getEvaluationNanos()), getEvaluations(), getHits(), expression);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.model.Plugin;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Computes SHA-256 fingerprints of mojo executions from the plugin coordinates and dependencies, the goal, the
+ * effective configuration, the declared outputs and the contents of the input files. Inputs are identified by their
+ * name and the paths below them, and outputs by a path relative to the state directory, not by their location, so the
+ * same execution has the same fingerprint in different workspaces.
+ */
+final class Fingerprints {
+    // files smaller than this are read into a heap buffer, mapping them costs more than it saves
+    private static final long MAP_THRESHOLD = 64 * 1024;
+    private static final long MAP_CHUNK = 64 * 1024 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Fingerprints() {
+    }
+
+    static String fingerprint(Plugin plugin, String goal, String executionId, Xpp3Dom configuration,
+                              List<File> inputs, Collection<String> outputs) throws IOException {
+        MessageDigest digest = newDigest();
+        update(digest, plugin.getGroupId() + ":" + plugin.getArtifactId() + ":" + plugin.getVersion()
+            + ":" + goal + "#" + executionId);
+        // the same coordinates the plugin realm is resolved from
+        List<String> dependencies = PluginDescriptorCache.Key.dependencyKeys(plugin.getDependencies());
+        updateLength(digest, dependencies.size());
+        for (String dependency : dependencies) {
+            update(digest, dependency);
+        }
+        update(digest, configuration);
+        updateLength(digest, outputs.size());
+        for (String output : outputs) {
+            update(digest, output);
+        }
+        for (File input : inputs) {
+            update(digest, input.toPath());
+        }
+        return hex(digest.digest());
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[2 * i + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            digest.update((byte) 0);
+        } else {
+            digest.update((byte) 1);
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            updateLength(digest, bytes.length);
+            digest.update(bytes);
+        }
+    }
+
+    private static void updateLength(MessageDigest digest, long length) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            digest.update((byte) (length >>> shift));
+        }
+    }
+
+    // attributes are sorted, since their order carries no meaning
+    private static void update(MessageDigest digest, Xpp3Dom dom) {
+        update(digest, dom.getName());
+        update(digest, dom.getValue());
+        String[] attributeNames = dom.getAttributeNames();
+        Arrays.sort(attributeNames);
+        updateLength(digest, attributeNames.length);
+        for (String attributeName : attributeNames) {
+            update(digest, attributeName);
+            update(digest, dom.getAttribute(attributeName));
+        }
+        updateLength(digest, dom.getChildCount());
+        for (Xpp3Dom child : dom.getChildren()) {
+            update(digest, child);
+        }
+    }
+
+    private static void update(MessageDigest digest, Path input) throws IOException {
+        Path name = input.toAbsolutePath().normalize().getFileName();
+        update(digest, name != null ? name.toString() : "");
+        if (!Files.exists(input)) {
+            update(digest, "missing");
+            return;
+        }
+        if (!Files.isDirectory(input)) {
+            updateContent(digest, input);
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(input)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toCollection(ArrayList::new));
+        }
+        files.sort(null);
+        updateLength(digest, files.size());
+        for (Path file : files) {
+            update(digest, input.relativize(file).toString().replace(File.separatorChar, '/'));
+            updateContent(digest, file);
+        }
+    }
+
+    /**
+     * @param file the file
+     * @return a SHA-256 based hash identifying the content of the file
+     * @throws IOException if the file cannot be read
+     */
+    static String contentHash(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        updateContent(digest, file);
+        return hex(digest.digest());
+    }
+
+    private static void updateContent(MessageDigest digest, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            updateLength(digest, size);
+            if (size < MAP_THRESHOLD) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // keep reading
+                }
+                buffer.flip();
+                digest.update(buffer);
+                return;
+            }
+            for (long position = 0; position < size; position += MAP_CHUNK) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(MAP_CHUNK, size - position));
+                digest.update(mapped);
+            }
+        }
+    }
+}
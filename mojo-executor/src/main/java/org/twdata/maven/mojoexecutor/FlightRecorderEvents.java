@@ -0,0 +1,165 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Java Flight Recorder events for mojo executions and plugin descriptor loading, so that recordings of a build show
+ * which mojo ran when, next to the GC, allocation and lock data of the same recording.
+ * <p>
+ * The events are only touched on JVMs that provide JFR; elsewhere the methods do nothing. Events are only created while
+ * a recording enables them, so executions without a recording only check a flag.
+ */
+final class FlightRecorderEvents {
+    private static final boolean AVAILABLE = isAvailable();
+
+    private FlightRecorderEvents() {
+        throw new AssertionError("non-instantiable");
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, FlightRecorderEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the started event, or {@code null} without JFR or if no recording enables the event
+     */
+    static Object beginExecution() {
+        return AVAILABLE ? Events.beginExecution() : null;
+    }
+
+    static void commitExecution(Object event, MavenProject project, Plugin plugin, String goal, String executionId,
+                                String outcome) {
+        if (event != null) {
+            Events.commitExecution(event, project, plugin, goal, executionId, outcome);
+        }
+    }
+
+    /**
+     * @return the started event, or {@code null} without JFR or if no recording enables the event
+     */
+    static Object beginDescriptorLoad() {
+        return AVAILABLE ? Events.beginDescriptorLoad() : null;
+    }
+
+    static void commitDescriptorLoad(Object event, Plugin plugin, boolean cacheHit) {
+        if (event != null) {
+            Events.commitDescriptorLoad(event, plugin, cacheHit);
+        }
+    }
+
+    private static String coordinates(Plugin plugin) {
+        return plugin.getGroupId() + ":" + plugin.getArtifactId() + ":" + plugin.getVersion();
+    }
+
+    /**
+     * Keeps the JFR types out of the methods above, so that this class loads and verifies without JFR.
+     */
+    private static final class Events {
+        private static final EventType EXECUTION = EventType.getEventType(MojoExecutionEvent.class);
+        private static final EventType DESCRIPTOR_LOAD = EventType.getEventType(DescriptorLoadEvent.class);
+
+        static Object beginExecution() {
+            if (!EXECUTION.isEnabled()) {
+                return null;
+            }
+            MojoExecutionEvent event = new MojoExecutionEvent();
+            event.begin();
+            return event;
+        }
+
+        static Object beginDescriptorLoad() {
+            if (!DESCRIPTOR_LOAD.isEnabled()) {
+                return null;
+            }
+            DescriptorLoadEvent event = new DescriptorLoadEvent();
+            event.begin();
+            return event;
+        }
+
+        static void commitExecution(Object started, MavenProject project, Plugin plugin, String goal,
+                                    String executionId, String outcome) {
+            MojoExecutionEvent event = (MojoExecutionEvent) started;
+            event.end();
+            if (event.shouldCommit()) {
+                if (project != null) {
+                    event.project = project.getGroupId() + ":" + project.getArtifactId() + ":" + project.getVersion();
+                }
+                event.plugin = coordinates(plugin);
+                event.goal = goal;
+                event.executionId = executionId;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+
+        static void commitDescriptorLoad(Object started, Plugin plugin, boolean cacheHit) {
+            DescriptorLoadEvent event = (DescriptorLoadEvent) started;
+            event.end();
+            if (event.shouldCommit()) {
+                event.plugin = coordinates(plugin);
+                event.cacheHit = cacheHit;
+                event.commit();
+            }
+        }
+    }
+
+    @Name("org.twdata.maven.mojoexecutor.MojoExecution")
+    @Label("Mojo Execution")
+    @Description("A mojo executed through the Mojo Executor")
+    @Category({"Maven", "Mojo Executor"})
+    static final class MojoExecutionEvent extends Event {
+        @Label("Project")
+        String project;
+
+        @Label("Plugin")
+        String plugin;
+
+        @Label("Goal")
+        String goal;
+
+        @Label("Execution Id")
+        String executionId;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name("org.twdata.maven.mojoexecutor.DescriptorLoad")
+    @Label("Plugin Descriptor Load")
+    @Description("The plugin descriptor of a mojo looked up in the session cache or resolved")
+    @Category({"Maven", "Mojo Executor"})
+    static final class DescriptorLoadEvent extends Event {
+        @Label("Plugin")
+        String plugin;
+
+        @Label("Cache Hit")
+        boolean cacheHit;
+    }
+}
@@ -24,82 +24,241 @@ import org.apache.maven.plugin.PluginDescriptorParsingException;
 import org.apache.maven.plugin.PluginNotFoundException;
 import org.apache.maven.plugin.PluginResolutionException;
 import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.repository.RemoteRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.twdata.maven.mojoexecutor.MojoExecutor.ExecutionEnvironment;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.util.List;
 
 /**
  * The {@code MavenCompatibilityHelper} hides incompatibilities between Maven versions
- *
+ * <p>
+ * When the running Maven exposes the Eclipse Aether based API this helper is compiled against, calls are made
+ * directly. Otherwise the {@code getRepositorySession} and {@code loadPlugin} methods are located once and bound as
+ * {@link MethodHandle}s.
  */
 public class MavenCompatibilityHelper {
 
     private static final Logger logger = LoggerFactory.getLogger( MavenCompatibilityHelper.class );
 
-    private static Method getRepositorySession;
-    private static Method loadPlugin;
+    private static final PluginLoader pluginLoader;
 
     static {
+        PluginLoader loader;
+        try {
+            loader = DirectPluginLoader.createIfSupported();
+        } catch (LinkageError e) {
+            logger.debug("Maven API does not support direct plugin loading", e);
+            loader = null;
+        }
+        if (loader == null) {
+            loader = MethodHandlePluginLoader.create();
+        }
+        logger.debug("Using {}", loader);
+        pluginLoader = loader;
+    }
+
+    static Object getRepositorySession(MavenSession session) {
+        return pluginLoader.getRepositorySession(session);
+    }
+
+    /**
+     * Loads the descriptor of the given plugin, resolving the plugin if it has not been resolved yet within the
+     * session. See {@link PluginDescriptorCache}.
+     *
+     * @param plugin  the plugin to load
+     * @param env     the execution environment
+     * @param session the current Maven session
+     * @return the plugin descriptor
+     * @throws PluginResolutionException        if the plugin could not be resolved
+     * @throws PluginDescriptorParsingException if the plugin descriptor could not be parsed
+     * @throws InvalidPluginDescriptorException if the plugin descriptor is invalid
+     * @throws PluginNotFoundException          if the plugin could not be found
+     * @throws MojoExecutionException           if the plugin manager could not be invoked
+     */
+    public static PluginDescriptor loadPluginDescriptor(Plugin plugin, ExecutionEnvironment env, MavenSession session)
+        throws PluginResolutionException, PluginDescriptorParsingException, InvalidPluginDescriptorException,
+        PluginNotFoundException, MojoExecutionException {
+
+        Object repositorySession = pluginLoader.getRepositorySession(session);
+
+        BuildPluginManager pluginManager = env.getPluginManager();
+
+        List<RemoteRepository> repositories = null;
+        if ( session.getCurrentProject() != null ) {
+            repositories = session.getCurrentProject().getRemotePluginRepositories();
+        }
+
+        PluginDescriptorCache cache = PluginDescriptorCache.forScope(repositorySession, session);
+        PluginDescriptorCache.Key key = new PluginDescriptorCache.Key(plugin, repositories);
+        Object event = FlightRecorderEvents.beginDescriptorLoad();
+        PluginDescriptor pluginDescriptor = cache.get(key);
+        if (pluginDescriptor != null) {
+            logger.debug("Using cached descriptor for plugin {}", plugin);
+            FlightRecorderEvents.commitDescriptorLoad(event, plugin, true);
+            return pluginDescriptor;
+        }
+
+        logger.debug("Attempting to load plugin {} using pluginManager {} and repositories {}", plugin, pluginManager, repositories);
+        pluginDescriptor = pluginLoader.loadPlugin(pluginManager, plugin, repositories, repositorySession);
+        pluginDescriptor = cache.put(key, pluginDescriptor);
+        FlightRecorderEvents.commitDescriptorLoad(event, plugin, false);
+        return pluginDescriptor;
+    }
+
+    static PluginLoader directPluginLoader() {
+        return DirectPluginLoader.createIfSupported();
+    }
+
+    static PluginLoader methodHandlePluginLoader() {
+        return MethodHandlePluginLoader.create();
+    }
+
+    /**
+     * Strategy for the Maven API calls that differ between Maven versions.
+     */
+    abstract static class PluginLoader {
 
-        for (Method m : MavenSession.class.getMethods()) {
-            if ("getRepositorySession".equals(m.getName())) {
-                getRepositorySession = m;
-                break;
+        abstract Object getRepositorySession(MavenSession session);
+
+        abstract PluginDescriptor loadPlugin(BuildPluginManager pluginManager, Plugin plugin,
+                                             List<RemoteRepository> repositories, Object repositorySession)
+            throws PluginResolutionException, PluginDescriptorParsingException, InvalidPluginDescriptorException,
+            PluginNotFoundException, MojoExecutionException;
+    }
+
+    /**
+     * Calls the Maven API directly. Only loaded when the running Maven matches the API this class is compiled against.
+     */
+    static final class DirectPluginLoader extends PluginLoader {
+
+        static PluginLoader createIfSupported() {
+            try {
+                Method getRepositorySession = MavenSession.class.getMethod("getRepositorySession");
+                if (getRepositorySession.getReturnType() != RepositorySystemSession.class) {
+                    return null;
+                }
+                BuildPluginManager.class.getMethod("loadPlugin", Plugin.class, List.class, RepositorySystemSession.class);
+                return new DirectPluginLoader();
+            } catch (NoSuchMethodException | LinkageError e) {
+                logger.debug("Maven API does not support direct plugin loading", e);
+                return null;
             }
         }
 
-        if (getRepositorySession == null) {
-            throw new ExceptionInInitializerError("Unable to locate getRepositorySession method");
+        @Override
+        Object getRepositorySession(MavenSession session) {
+            return session.getRepositorySession();
         }
 
-        for (Method m : BuildPluginManager.class.getMethods()) {
-            if ("loadPlugin".equals(m.getName())) {
-                loadPlugin = m;
-                break;
+        @Override
+        PluginDescriptor loadPlugin(BuildPluginManager pluginManager, Plugin plugin,
+                                    List<RemoteRepository> repositories, Object repositorySession)
+            throws PluginResolutionException, PluginDescriptorParsingException, InvalidPluginDescriptorException,
+            PluginNotFoundException, MojoExecutionException {
+            try {
+                return pluginManager.loadPlugin(plugin, repositories, (RepositorySystemSession) repositorySession);
+            } catch (RuntimeException e) {
+                logger.debug("Unable to invoke plugin", e);
+                throw new MojoExecutionException("Unable to invoke plugin", e);
             }
         }
 
-        if (loadPlugin == null) {
-            throw new ExceptionInInitializerError("Unable to locate loadPluginDescriptor method");
+        @Override
+        public String toString() {
+            return "direct plugin loader";
         }
     }
 
-    public static PluginDescriptor loadPluginDescriptor(Plugin plugin, ExecutionEnvironment env, MavenSession session)
-        throws PluginResolutionException, PluginDescriptorParsingException, InvalidPluginDescriptorException,
-        PluginNotFoundException, MojoExecutionException {
+    /**
+     * Binds the Maven API methods once by name, for Maven versions whose signatures differ from the compiled API.
+     */
+    static final class MethodHandlePluginLoader extends PluginLoader {
 
-        try {
-            Object repositorySession = getRepositorySession.invoke(session);
+        private final MethodHandle getRepositorySession;
+        private final MethodHandle loadPlugin;
+
+        private MethodHandlePluginLoader(MethodHandle getRepositorySession, MethodHandle loadPlugin) {
+            this.getRepositorySession = getRepositorySession;
+            this.loadPlugin = loadPlugin;
+        }
+
+        static PluginLoader create() {
+            Method getRepositorySession = null;
+            for (Method m : MavenSession.class.getMethods()) {
+                if ("getRepositorySession".equals(m.getName())) {
+                    getRepositorySession = m;
+                    break;
+                }
+            }
 
-            BuildPluginManager pluginManager = env.getPluginManager();
+            if (getRepositorySession == null) {
+                throw new ExceptionInInitializerError("Unable to locate getRepositorySession method");
+            }
+
+            Method loadPlugin = null;
+            for (Method m : BuildPluginManager.class.getMethods()) {
+                if ("loadPlugin".equals(m.getName())) {
+                    loadPlugin = m;
+                    break;
+                }
+            }
+
+            if (loadPlugin == null) {
+                throw new ExceptionInInitializerError("Unable to locate loadPluginDescriptor method");
+            }
+
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                return new MethodHandlePluginLoader(
+                    lookup.unreflect(getRepositorySession)
+                        .asType(MethodType.methodType(Object.class, MavenSession.class)),
+                    lookup.unreflect(loadPlugin)
+                        .asType(MethodType.methodType(PluginDescriptor.class, BuildPluginManager.class, Plugin.class,
+                            List.class, Object.class)));
+            } catch (IllegalAccessException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
 
-            List<RemoteRepository> repositories = null;
-            if ( session.getCurrentProject() != null ) {
-                repositories = session.getCurrentProject().getRemotePluginRepositories();
+        @Override
+        Object getRepositorySession(MavenSession session) {
+            try {
+                return (Object) getRepositorySession.invokeExact(session);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Unable to access repository session", e);
             }
-            logger.debug("Attempting to load plugin {} using pluginManager {} and repositories {}", plugin, pluginManager, repositories);
-            return (PluginDescriptor) loadPlugin.invoke(pluginManager, plugin, repositories, repositorySession);
-        } catch (IllegalAccessException e) {
-            throw new MojoExecutionException("Unable to access plugin", e);
-        } catch (InvocationTargetException e) {
-            logger.debug("Unable to invoke plugin", e.getCause());
-            // Unwrap the exception to throw the correct type.
-            if (e.getCause() instanceof PluginNotFoundException) {
-                throw ((PluginNotFoundException) e.getCause());
-            } else if (e.getCause() instanceof PluginResolutionException) {
-                throw ((PluginResolutionException) e.getCause());
-            } else if (e.getCause() instanceof PluginDescriptorParsingException) {
-                throw ((PluginDescriptorParsingException) e.getCause());
-            } else if (e.getCause() instanceof InvalidPluginDescriptorException) {
-                throw ((InvalidPluginDescriptorException) e.getCause());
-            } else {
-                throw new MojoExecutionException("Unable to invoke plugin", e.getCause());
+        }
+
+        @Override
+        PluginDescriptor loadPlugin(BuildPluginManager pluginManager, Plugin plugin,
+                                    List<RemoteRepository> repositories, Object repositorySession)
+            throws PluginResolutionException, PluginDescriptorParsingException, InvalidPluginDescriptorException,
+            PluginNotFoundException, MojoExecutionException {
+            try {
+                return (PluginDescriptor) loadPlugin.invokeExact(pluginManager, plugin, (List) repositories,
+                    repositorySession);
+            } catch (PluginNotFoundException | PluginResolutionException | PluginDescriptorParsingException
+                | InvalidPluginDescriptorException e) {
+                logger.debug("Unable to invoke plugin", e);
+                throw e;
+            } catch (Throwable e) {
+                logger.debug("Unable to invoke plugin", e);
+                throw new MojoExecutionException("Unable to invoke plugin", e);
             }
         }
+
+        @Override
+        public String toString() {
+            return "method handle plugin loader";
+        }
     }
 }
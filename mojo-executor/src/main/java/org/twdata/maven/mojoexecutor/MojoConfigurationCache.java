@@ -0,0 +1,142 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
+import org.codehaus.plexus.configuration.PlexusConfiguration;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.Xpp3DomUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Memoizes the merge of execution configurations with the defaults of their mojo descriptor.
+ * <p>
+ * The converted defaults are kept per descriptor, together with the merged results of the last
+ * {@value #MERGES_PER_MOJO} configurations, which are matched by content. The defaults, configurations and results are
+ * interned (see {@link ConfigurationInterner}), so that they share their common elements across mojos, and each
+ * execution gets a copy of the cached result, so that it cannot corrupt the cache. Descriptors are held weakly and
+ * discarded with their plugin realm.
+ */
+final class MojoConfigurationCache {
+    static final int MERGES_PER_MOJO = 8;
+
+    private static final Map<MojoDescriptor, Defaults> defaults = new WeakHashMap<>();
+
+    private MojoConfigurationCache() {
+        throw new AssertionError("non-instantiable");
+    }
+
+    /**
+     * @return the configuration merged with the defaults of the mojo, for a single execution, which may modify it
+     */
+    static Xpp3Dom merge(MojoDescriptor mojoDescriptor, Xpp3Dom configuration) {
+        if (PlexusConfigurationUtils.isSingleUse(configuration)) {
+            // configurations converted for a single execution take the merge directly
+            return Xpp3DomUtils.mergeXpp3Dom(configuration, defaults(mojoDescriptor).dom);
+        }
+        return new Xpp3Dom(mergeShared(mojoDescriptor, configuration));
+    }
+
+    /**
+     * @return the configuration merged with the defaults of the mojo, interned, to be shared by many executions
+     */
+    static Xpp3Dom mergeShared(MojoDescriptor mojoDescriptor, Xpp3Dom configuration) {
+        Defaults mojoDefaults = defaults(mojoDescriptor);
+        if (PlexusConfigurationUtils.isSingleUse(configuration)) {
+            return ConfigurationInterner.intern(Xpp3DomUtils.mergeXpp3Dom(configuration, mojoDefaults.dom));
+        }
+        Key key = new Key(configuration);
+        Xpp3Dom merged = mojoDefaults.merged(key);
+        if (merged != null) {
+            return merged;
+        }
+        // the merge modifies its dominant argument, so it works on a copy of the caller's configuration
+        merged = ConfigurationInterner.intern(Xpp3DomUtils.mergeXpp3Dom(new Xpp3Dom(configuration), mojoDefaults.dom));
+        mojoDefaults.put(new Key(ConfigurationInterner.intern(configuration), key.hash), merged);
+        return merged;
+    }
+
+    private static Defaults defaults(MojoDescriptor mojoDescriptor) {
+        PlexusConfiguration source = mojoDescriptor.getMojoConfiguration();
+        synchronized (defaults) {
+            Defaults mojoDefaults = defaults.get(mojoDescriptor);
+            // descriptors are equal by plugin and goal, so the configuration tells apart different descriptors
+            if (mojoDefaults == null || mojoDefaults.source != source) {
+                mojoDefaults = new Defaults(source);
+                defaults.put(mojoDescriptor, mojoDefaults);
+            }
+            return mojoDefaults;
+        }
+    }
+
+    /**
+     * The converted defaults of a mojo, which the merge only reads, and its recent merges.
+     */
+    private static final class Defaults {
+        final PlexusConfiguration source;
+        final Xpp3Dom dom;
+        private final Map<Key, Xpp3Dom> merges =
+            new LinkedHashMap<Key, Xpp3Dom>(MERGES_PER_MOJO * 2, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Xpp3Dom> eldest) {
+                    return size() > MERGES_PER_MOJO;
+                }
+            };
+
+        Defaults(PlexusConfiguration source) {
+            this.source = source;
+            this.dom = ConfigurationInterner.intern(PlexusConfigurationUtils.toXpp3Dom(source));
+        }
+
+        synchronized Xpp3Dom merged(Key key) {
+            return merges.get(key);
+        }
+
+        synchronized void put(Key key, Xpp3Dom merged) {
+            merges.put(key, merged);
+        }
+    }
+
+    /**
+     * An execution configuration, matched by content. The hash is computed once, outside of the cache lock.
+     */
+    private static final class Key {
+        final Xpp3Dom configuration;
+        final int hash;
+
+        Key(Xpp3Dom configuration) {
+            this(configuration, configuration.hashCode());
+        }
+
+        Key(Xpp3Dom configuration, int hash) {
+            this.configuration = configuration;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && hash == ((Key) o).hash && configuration.equals(((Key) o).configuration);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
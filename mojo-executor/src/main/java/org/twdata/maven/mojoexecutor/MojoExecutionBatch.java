@@ -0,0 +1,477 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.model.Plugin;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.twdata.maven.mojoexecutor.MojoExecutor.ExecutionEnvironment;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Executes a set of mojo invocations with "runs-after" dependencies between them, running as many invocations in
+ * parallel as the dependencies and the pool allow. Here is a batch that copies dependencies and resources in parallel
+ * before packaging:
+ * <pre>
+ * MojoExecutionBatch batch = batch(executionEnvironment(project, session, pluginManager));
+ * Invocation copyDependencies = batch.add(dependencyPlugin, goal("copy-dependencies"), configuration(...));
+ * Invocation copyResources = batch.add(resourcesPlugin, goal("copy-resources"), configuration(...));
+ * batch.add(assemblyPlugin, goal("single"), configuration(...)).runsAfter(copyDependencies, copyResources);
+ * batch.execute();
+ * </pre>
+ * <p>
+ * When the batch is executed, the descriptors of all plugins are resolved in parallel first. Ready invocations are
+ * then started in order of the remaining critical path behind them, so that long chains start as early as possible.
+ * When an invocation fails, all invocations that (transitively) run after it are cancelled, while independent
+ * invocations still run to completion. Like {@link MojoExecutor#executeMojoAsync}, invocations run with the context
+ * class loader and the {@link ThreadOutput} redirection of the thread executing the batch.
+ * <p>
+ * A batch can only be executed once.
+ */
+public class MojoExecutionBatch {
+
+    private static final Logger logger = LoggerFactory.getLogger(MojoExecutionBatch.class);
+
+    private final ExecutionEnvironment env;
+    private final List<Invocation> invocations = new ArrayList<>();
+    private boolean executed;
+
+    public MojoExecutionBatch(ExecutionEnvironment env) {
+        if (env == null) {
+            throw new NullPointerException("env may not be null");
+        }
+        this.env = env;
+    }
+
+    /**
+     * Adds an invocation to the batch. The plugin is copied and the configuration interned, so callers may reuse them,
+     * and invocations with similar configurations share their common elements.
+     *
+     * @param plugin        The plugin to execute
+     * @param goal          The goal to execute
+     * @param configuration The execution configuration
+     * @return the invocation, to declare its dependencies on
+     */
+    public synchronized Invocation add(Plugin plugin, String goal, Xpp3Dom configuration) {
+        if (configuration == null) {
+            throw new NullPointerException("configuration may not be null");
+        }
+        checkNotExecuted();
+        Invocation invocation = new Invocation(this, invocations.size(), plugin.clone(), goal,
+            ConfigurationInterner.intern(configuration));
+        invocations.add(invocation);
+        return invocation;
+    }
+
+    /**
+     * @return the invocations of this batch, in the order they were added
+     */
+    public synchronized List<Invocation> getInvocations() {
+        return Collections.unmodifiableList(new ArrayList<>(invocations));
+    }
+
+    /**
+     * Executes the batch on a new pool with one thread per available processor.
+     *
+     * @return the results of all invocations, in the order they were added
+     * @throws MojoExecutionException if any invocation failed; the remaining failures are attached as suppressed
+     *                                exceptions
+     */
+    public Map<Invocation, MojoExecutionResult> execute() throws MojoExecutionException {
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            return execute(pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Executes the batch on the given pool, running at most {@link ForkJoinPool#getParallelism()} invocations at a
+     * time.
+     *
+     * @param pool the pool to run the invocations on
+     * @return the results of all invocations, in the order they were added
+     * @throws MojoExecutionException if any invocation failed; the remaining failures are attached as suppressed
+     *                                exceptions
+     */
+    public Map<Invocation, MojoExecutionResult> execute(ForkJoinPool pool) throws MojoExecutionException {
+        List<Invocation> nodes;
+        synchronized (this) {
+            checkNotExecuted();
+            executed = true;
+            nodes = new ArrayList<>(invocations);
+        }
+        if (nodes.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        computeCriticalPaths(nodes);
+        CallerContext caller = new CallerContext();
+        preloadPluginDescriptors(nodes, pool, caller);
+
+        Scheduler scheduler = new Scheduler(nodes, pool, caller);
+        scheduler.start();
+        try {
+            scheduler.await();
+        } catch (InterruptedException e) {
+            scheduler.cancelPending();
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while executing mojo batch", e);
+        }
+
+        Map<Invocation, MojoExecutionResult> results = new LinkedHashMap<>();
+        MojoExecutionException failure = null;
+        int failed = 0;
+        int cancelled = 0;
+        for (Invocation invocation : nodes) {
+            switch (invocation.status) {
+                case SUCCEEDED:
+                    results.put(invocation, invocation.result);
+                    break;
+                case FAILED:
+                    failed++;
+                    if (failure == null) {
+                        failure = new MojoExecutionException("Unable to execute mojo batch: " + invocation,
+                            invocation.failure);
+                    } else {
+                        failure.addSuppressed(invocation.failure);
+                    }
+                    break;
+                default:
+                    cancelled++;
+                    break;
+            }
+        }
+        if (failure != null) {
+            logger.debug("Mojo batch finished with {} failed and {} cancelled invocations", failed, cancelled);
+            throw failure;
+        }
+        return results;
+    }
+
+    private void checkNotExecuted() {
+        if (executed) {
+            throw new IllegalStateException("The batch has already been executed");
+        }
+    }
+
+    /**
+     * Computes, for every invocation, the cost of the longest chain of invocations starting with it. Fails on cycles.
+     */
+    private static void computeCriticalPaths(List<Invocation> nodes) {
+        Map<Invocation, Integer> remaining = new HashMap<>();
+        Deque<Invocation> sinks = new ArrayDeque<>();
+        for (Invocation node : nodes) {
+            remaining.put(node, node.dependents.size());
+            if (node.dependents.isEmpty()) {
+                sinks.add(node);
+            }
+        }
+        int visited = 0;
+        while (!sinks.isEmpty()) {
+            Invocation node = sinks.poll();
+            visited++;
+            long longestDependent = 0;
+            for (Invocation dependent : node.dependents) {
+                longestDependent = Math.max(longestDependent, dependent.criticalPath);
+            }
+            node.criticalPath = node.cost + longestDependent;
+            for (Invocation prerequisite : node.prerequisites) {
+                int left = remaining.get(prerequisite) - 1;
+                remaining.put(prerequisite, left);
+                if (left == 0) {
+                    sinks.add(prerequisite);
+                }
+            }
+        }
+        if (visited != nodes.size()) {
+            throw new IllegalStateException("The runs-after dependencies of the batch contain a cycle");
+        }
+    }
+
+    /**
+     * Resolves the descriptor of every distinct plugin in parallel, so that executions find them in the
+     * {@link PluginDescriptorCache}. Failures are left for the execution to report.
+     */
+    private void preloadPluginDescriptors(List<Invocation> nodes, ForkJoinPool pool, CallerContext caller) {
+        final Map<PluginDescriptorCache.Key, Plugin> plugins = new LinkedHashMap<>();
+        for (Invocation node : nodes) {
+            Plugin plugin = MojoExecutor.resolvePluginVersion(node.plugin, env.getMavenSession().getCurrentProject());
+            plugins.put(new PluginDescriptorCache.Key(plugin, null), plugin);
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(plugins.size());
+        for (final Plugin plugin : plugins.values()) {
+            tasks.add(pool.submit(() -> caller.run(() -> {
+                try {
+                    MavenCompatibilityHelper.loadPluginDescriptor(plugin, env, env.getMavenSession());
+                } catch (Exception e) {
+                    logger.debug("Unable to preload descriptor of plugin {}", plugin, e);
+                }
+            })));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * The context class loader and output redirection of the thread executing the batch, adopted by the pool threads
+     * while they run its tasks. Pool threads may have inherited other output scopes from the thread that started them.
+     */
+    private static final class CallerContext {
+        private final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        private final ThreadOutput.Scope output = ThreadOutput.capture();
+
+        void run(Runnable task) {
+            Thread thread = Thread.currentThread();
+            ClassLoader previousClassLoader = thread.getContextClassLoader();
+            ThreadOutput.Scope previousOutput = ThreadOutput.adopt(output);
+            thread.setContextClassLoader(contextClassLoader);
+            try {
+                task.run();
+            } finally {
+                thread.setContextClassLoader(previousClassLoader);
+                ThreadOutput.release(previousOutput);
+            }
+        }
+    }
+
+    private final class Scheduler {
+        private final List<Invocation> nodes;
+        private final ForkJoinPool pool;
+        private final CallerContext caller;
+        private final PriorityQueue<Invocation> ready = new PriorityQueue<>((a, b) -> {
+            int byCriticalPath = Long.compare(b.criticalPath, a.criticalPath);
+            return byCriticalPath != 0 ? byCriticalPath : Integer.compare(a.index, b.index);
+        });
+        private final Map<Invocation, Integer> pendingPrerequisites = new HashMap<>();
+        private final CountDownLatch done;
+        private int running;
+
+        Scheduler(List<Invocation> nodes, ForkJoinPool pool, CallerContext caller) {
+            this.nodes = nodes;
+            this.pool = pool;
+            this.caller = caller;
+            this.done = new CountDownLatch(nodes.size());
+        }
+
+        synchronized void start() {
+            for (Invocation node : nodes) {
+                pendingPrerequisites.put(node, node.prerequisites.size());
+                if (node.prerequisites.isEmpty()) {
+                    ready.add(node);
+                }
+            }
+            dispatch();
+        }
+
+        void await() throws InterruptedException {
+            done.await();
+        }
+
+        private void dispatch() {
+            while (running < pool.getParallelism() && !ready.isEmpty()) {
+                final Invocation node = ready.poll();
+                node.status = Status.RUNNING;
+                running++;
+                try {
+                    pool.execute(() -> run(node));
+                } catch (RuntimeException e) {
+                    completed(node, null, e);
+                }
+            }
+        }
+
+        private void run(Invocation node) {
+            caller.run(() -> {
+                MojoExecutionResult result = null;
+                Throwable failure = null;
+                try {
+                    result = MojoExecutor.execute(node.plugin, node.goal, node.configuration, env);
+                } catch (Throwable e) {
+                    failure = e;
+                }
+                completed(node, result, failure);
+            });
+        }
+
+        private synchronized void completed(Invocation node, MojoExecutionResult result, Throwable failure) {
+            running--;
+            if (failure == null) {
+                node.result = result;
+                node.status = Status.SUCCEEDED;
+                for (Invocation dependent : node.dependents) {
+                    int left = pendingPrerequisites.get(dependent) - 1;
+                    pendingPrerequisites.put(dependent, left);
+                    if (left == 0 && dependent.status == Status.PENDING) {
+                        ready.add(dependent);
+                    }
+                }
+            } else {
+                logger.debug("Invocation {} failed, cancelling the invocations that run after it", node, failure);
+                node.failure = failure;
+                node.status = Status.FAILED;
+                cancelDependents(node);
+            }
+            done.countDown();
+            dispatch();
+        }
+
+        private void cancelDependents(Invocation node) {
+            Deque<Invocation> queue = new ArrayDeque<>(node.dependents);
+            while (!queue.isEmpty()) {
+                Invocation dependent = queue.poll();
+                if (dependent.status == Status.PENDING) {
+                    dependent.status = Status.CANCELLED;
+                    ready.remove(dependent);
+                    done.countDown();
+                    queue.addAll(dependent.dependents);
+                }
+            }
+        }
+
+        synchronized void cancelPending() {
+            ready.clear();
+            for (Invocation node : nodes) {
+                if (node.status == Status.PENDING) {
+                    node.status = Status.CANCELLED;
+                    done.countDown();
+                }
+            }
+        }
+    }
+
+    /**
+     * The state of an {@link Invocation}.
+     */
+    public enum Status {
+        PENDING, RUNNING, SUCCEEDED, FAILED, CANCELLED
+    }
+
+    /**
+     * A mojo invocation within a {@link MojoExecutionBatch}.
+     */
+    public static final class Invocation {
+        private final MojoExecutionBatch batch;
+        private final int index;
+        private final Plugin plugin;
+        private final String goal;
+        private final Xpp3Dom configuration;
+        private final Set<Invocation> prerequisites = new LinkedHashSet<>();
+        private final Set<Invocation> dependents = new LinkedHashSet<>();
+        private long cost = 1;
+        private long criticalPath;
+        private volatile Status status = Status.PENDING;
+        private volatile MojoExecutionResult result;
+        private volatile Throwable failure;
+
+        private Invocation(MojoExecutionBatch batch, int index, Plugin plugin, String goal, Xpp3Dom configuration) {
+            this.batch = batch;
+            this.index = index;
+            this.plugin = plugin;
+            this.goal = goal;
+            this.configuration = configuration;
+        }
+
+        /**
+         * Declares that this invocation may only start after the given invocations have succeeded.
+         *
+         * @param others invocations of the same batch
+         * @return this invocation
+         */
+        public Invocation runsAfter(Invocation... others) {
+            synchronized (batch) {
+                batch.checkNotExecuted();
+                for (Invocation other : others) {
+                    if (other.batch != batch) {
+                        throw new IllegalArgumentException(other + " belongs to a different batch");
+                    }
+                    if (other == this) {
+                        throw new IllegalArgumentException(this + " cannot run after itself");
+                    }
+                    prerequisites.add(other);
+                    other.dependents.add(this);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Sets the relative cost of this invocation, used to order ready invocations by the cost of the longest
+         * chain behind them. Defaults to {@code 1}, which orders by the length of that chain.
+         *
+         * @param cost a positive estimate, e.g. the duration of a previous run in milliseconds
+         * @return this invocation
+         */
+        public Invocation cost(long cost) {
+            if (cost <= 0) {
+                throw new IllegalArgumentException("cost must be positive");
+            }
+            synchronized (batch) {
+                batch.checkNotExecuted();
+                this.cost = cost;
+            }
+            return this;
+        }
+
+        public Plugin getPlugin() {
+            return plugin;
+        }
+
+        public String getGoal() {
+            return goal;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return the result, or {@code null} unless the invocation succeeded
+         */
+        public MojoExecutionResult getResult() {
+            return result;
+        }
+
+        /**
+         * @return the failure, or {@code null} unless the invocation failed
+         */
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            return plugin.getGroupId() + ":" + plugin.getArtifactId() + ":" + goal;
+        }
+    }
+}
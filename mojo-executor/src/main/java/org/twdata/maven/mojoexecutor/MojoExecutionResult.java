@@ -0,0 +1,171 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.model.Plugin;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes a mojo execution, with the time spent in each of its {@link Phase phases}.
+ */
+public class MojoExecutionResult {
+    /**
+     * The phases of a mojo execution, in execution order.
+     */
+    public enum Phase {
+        /**
+         * Lookup of a missing plugin version in the plugin management of the current project.
+         */
+        VERSION_LOOKUP,
+        /**
+         * Loading of the plugin descriptor, including plugin resolution.
+         */
+        DESCRIPTOR_LOAD,
+        /**
+         * Merge of the configuration with the defaults of the mojo descriptor.
+         */
+        CONFIGURATION_MERGE,
+        /**
+         * Fingerprinting of the execution by an {@link UpToDateCheck}, if any.
+         */
+        UP_TO_DATE_CHECK,
+        /**
+         * Execution of the mojo by the {@link org.apache.maven.plugin.BuildPluginManager}, including storing its
+         * outputs in an {@link OutputCache}, or restoring them from it instead.
+         */
+        EXECUTION
+    }
+
+    /**
+     * How an execution completed.
+     */
+    public enum Outcome {
+        /**
+         * The mojo was executed.
+         */
+        EXECUTED,
+        /**
+         * The mojo was not executed, since its {@link UpToDateCheck} found it up to date.
+         */
+        UP_TO_DATE,
+        /**
+         * The mojo was not executed, its outputs were restored from the {@link OutputCache} of its
+         * {@link UpToDateCheck}.
+         */
+        RESTORED
+    }
+
+    private final Plugin plugin;
+    private final String goal;
+    private final String executionId;
+    private final long durationNanos;
+    private final long[] phaseNanos;
+    private final Outcome outcome;
+    private final ResourceUsage resourceUsage;
+
+    public MojoExecutionResult(Plugin plugin, String goal, String executionId, long durationNanos) {
+        this(plugin, goal, executionId, durationNanos, new long[Phase.values().length], Outcome.EXECUTED, null);
+    }
+
+    MojoExecutionResult(Plugin plugin, String goal, String executionId, long durationNanos, long[] phaseNanos,
+                        Outcome outcome, ResourceUsage resourceUsage) {
+        this.plugin = plugin;
+        this.goal = goal;
+        this.executionId = executionId;
+        this.durationNanos = durationNanos;
+        this.phaseNanos = phaseNanos;
+        this.outcome = outcome;
+        this.resourceUsage = resourceUsage;
+    }
+
+    /**
+     * @return the executed plugin, with its version resolved
+     */
+    public Plugin getPlugin() {
+        return plugin;
+    }
+
+    /**
+     * @return the executed goal, without the execution id
+     */
+    public String getGoal() {
+        return goal;
+    }
+
+    /**
+     * @return the execution id, or {@code null} if none was given
+     */
+    public String getExecutionId() {
+        return executionId;
+    }
+
+    /**
+     * @return the wall-clock duration of the execution in nanoseconds, measured with {@link System#nanoTime()}
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @param unit the time unit
+     * @return the wall-clock duration of the execution in the given unit
+     */
+    public long getDuration(TimeUnit unit) {
+        return unit.convert(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param phase the phase
+     * @return the time spent in the given phase in nanoseconds, {@code 0} if the phase was not reached
+     */
+    public long getDurationNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * @param phase the phase
+     * @param unit  the time unit
+     * @return the time spent in the given phase in the given unit, {@code 0} if the phase was not reached
+     */
+    public long getDuration(Phase phase, TimeUnit unit) {
+        return unit.convert(phaseNanos[phase.ordinal()], TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return whether the mojo was executed or skipped
+     */
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * @return the resources used by the execution, or {@code null} if the environment did not
+     *         {@link MojoExecutor.ExecutionEnvironment#accountResources account} for them
+     */
+    public ResourceUsage getResourceUsage() {
+        return resourceUsage;
+    }
+
+    @Override
+    public String toString() {
+        return plugin.getGroupId() + ":" + plugin.getArtifactId() + ":" + plugin.getVersion() + ":" + goal
+            + (executionId != null ? " (" + executionId + ")" : "")
+            + (outcome != Outcome.EXECUTED ? " " + outcome.name().toLowerCase(Locale.ROOT).replace('_', '-') : "")
+            + " in " + getDuration(TimeUnit.MILLISECONDS) + " ms";
+    }
+}
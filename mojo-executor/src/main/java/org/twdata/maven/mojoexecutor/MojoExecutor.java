@@ -18,7 +18,6 @@ package org.twdata.maven.mojoexecutor;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.model.Plugin;
-import org.apache.maven.model.PluginManagement;
 import org.apache.maven.plugin.BuildPluginManager;
 import org.apache.maven.plugin.InvalidPluginDescriptorException;
 import org.apache.maven.plugin.MojoExecution;
@@ -28,20 +27,27 @@ import org.apache.maven.plugin.PluginConfigurationException;
 import org.apache.maven.plugin.PluginDescriptorParsingException;
 import org.apache.maven.plugin.PluginManagerException;
 import org.apache.maven.plugin.PluginNotFoundException;
+import org.apache.maven.plugin.PluginParameterExpressionEvaluator;
 import org.apache.maven.plugin.PluginResolutionException;
 import org.apache.maven.plugin.descriptor.MojoDescriptor;
 import org.apache.maven.plugin.descriptor.PluginDescriptor;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
-import org.codehaus.plexus.util.xml.Xpp3DomUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-
-import static org.twdata.maven.mojoexecutor.PlexusConfigurationUtils.toXpp3Dom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Executes an arbitrary mojo using a fluent interface.  This is meant to be executed within the context of a Maven mojo. Here is an
@@ -81,51 +87,499 @@ public class MojoExecutor {
      */
     public static void executeMojo(Plugin plugin, String goal, Xpp3Dom configuration, ExecutionEnvironment env)
             throws MojoExecutionException {
-        logger.debug("Running executeMojo for {}", plugin);
+        execute(plugin, goal, configuration, env);
+    }
+
+    /**
+     * Entry point for executing a mojo unless it is up to date. See {@link UpToDateCheck} for when an execution is
+     * skipped.
+     *
+     * @param plugin        The plugin to execute
+     * @param goal          The goal to execute
+     * @param configuration The execution configuration
+     * @param env           The execution environment
+     * @param check         The up-to-date check, with the inputs and outputs of the execution
+     * @return The execution result, telling whether the mojo was executed
+     * @throws MojoExecutionException If there are any exceptions locating or executing the mojo, or fingerprinting
+     *                                its inputs
+     */
+    public static MojoExecutionResult executeMojo(Plugin plugin, String goal, Xpp3Dom configuration,
+                                                  ExecutionEnvironment env, UpToDateCheck check)
+            throws MojoExecutionException {
+        if (check == null) {
+            throw new NullPointerException("check may not be null");
+        }
+        return execute(plugin, goal, configuration, env, check);
+    }
+
+    /**
+     * Prepares a mojo invocation for repeated execution: the goal is parsed, the plugin version resolved, the plugin
+     * descriptor loaded and the configuration merged with the mojo defaults once. The plugin and configuration are
+     * copied, so callers may reuse or modify them.
+     *
+     * @param plugin        The plugin to execute
+     * @param goal          The goal to execute
+     * @param configuration The execution configuration
+     * @param env           The execution environment
+     * @return The prepared invocation, which is thread-safe
+     * @throws MojoExecutionException If the plugin or goal cannot be found
+     */
+    public static PreparedMojo prepare(Plugin plugin, String goal, Xpp3Dom configuration, ExecutionEnvironment env)
+            throws MojoExecutionException {
         if (configuration == null) {
             throw new NullPointerException("configuration may not be null");
         }
+        String executionId = null;
+        if (goal != null && goal.length() > 0 && goal.indexOf('#') > -1) {
+            int pos = goal.indexOf('#');
+            executionId = goal.substring(pos + 1);
+            goal = goal.substring(0, pos);
+        }
+        Plugin resolvedPlugin = resolvePluginVersion(plugin, env.getMavenSession().getCurrentProject()).clone();
+        MojoDescriptor mojoDescriptor = loadMojoDescriptor(resolvedPlugin, goal, env);
+        Xpp3Dom mergedConfiguration = MojoConfigurationCache.mergeShared(mojoDescriptor, configuration);
+        return new PreparedMojo(resolvedPlugin, goal, executionId, mojoDescriptor, mergedConfiguration, env);
+    }
+
+    /**
+     * Creates an up-to-date check storing its fingerprints in the given directory.
+     *
+     * @param stateDirectory The directory to store fingerprints in, usually below the build directory
+     * @return The up-to-date check
+     */
+    public static UpToDateCheck upToDateCheck(File stateDirectory) {
+        return new UpToDateCheck(stateDirectory);
+    }
+
+    /**
+     * Creates an output buffering with a 1 MB memory limit and a 64 MB size limit per execution.
+     *
+     * @return The output buffering
+     * @see ExecutionEnvironment#bufferOutput(OutputBuffering)
+     */
+    public static OutputBuffering outputBuffering() {
+        return new OutputBuffering();
+    }
+
+    /**
+     * Entry point for executing a mojo asynchronously on a shared, bounded pool of daemon threads. The pool size
+     * defaults to the number of available processors and can be changed with the {@code mojoexecutor.asyncThreads}
+     * system property.
+     *
+     * @param plugin        The plugin to execute
+     * @param goal          The goal to execute
+     * @param configuration The execution configuration
+     * @param env           The execution environment
+     * @return A future completed with the execution result, or exceptionally with the
+     *         {@link MojoExecutionException} raised by the execution
+     * @see #executeMojoAsync(Plugin, String, Xpp3Dom, ExecutionEnvironment, Executor)
+     */
+    public static CompletableFuture<MojoExecutionResult> executeMojoAsync(Plugin plugin, String goal,
+                                                                          Xpp3Dom configuration,
+                                                                          ExecutionEnvironment env) {
+        return executeMojoAsync(plugin, goal, configuration, env, DefaultExecutorHolder.EXECUTOR);
+    }
+
+    /**
+     * Entry point for executing a mojo asynchronously. The plugin and configuration are copied before this method
+     * returns, so callers may reuse or modify them, and several executions may run concurrently against the same
+     * {@link ExecutionEnvironment}. The mojo runs with the context class loader and the {@link ThreadOutput}
+     * redirection of the calling thread.
+     *
+     * @param plugin        The plugin to execute
+     * @param goal          The goal to execute
+     * @param configuration The execution configuration
+     * @param env           The execution environment
+     * @param executor      The executor running the mojo
+     * @return A future completed with the execution result, or exceptionally with the
+     *         {@link MojoExecutionException} raised by the execution or the
+     *         {@link RejectedExecutionException} of an executor that does not accept it
+     */
+    public static CompletableFuture<MojoExecutionResult> executeMojoAsync(Plugin plugin, String goal,
+                                                                          Xpp3Dom configuration,
+                                                                          ExecutionEnvironment env,
+                                                                          Executor executor) {
+        if (configuration == null) {
+            throw new NullPointerException("configuration may not be null");
+        }
+        final Plugin pluginCopy = plugin.clone();
+        final Xpp3Dom configurationCopy = new Xpp3Dom(configuration);
+        final CompletableFuture<MojoExecutionResult> result = new CompletableFuture<>();
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        final ThreadOutput.Scope output = ThreadOutput.capture();
         try {
-            String executionId = null;
-            if (goal != null && goal.length() > 0 && goal.indexOf('#') > -1) {
-                int pos = goal.indexOf('#');
-                executionId = goal.substring(pos + 1);
-                goal = goal.substring(0, pos);
-            }
+            executor.execute(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                Thread thread = Thread.currentThread();
+                ClassLoader previousClassLoader = thread.getContextClassLoader();
+                ThreadOutput.Scope previousOutput = ThreadOutput.adopt(output);
+                thread.setContextClassLoader(contextClassLoader);
+                try {
+                    result.complete(execute(pluginCopy, goal, configurationCopy, env));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    thread.setContextClassLoader(previousClassLoader);
+                    ThreadOutput.release(previousOutput);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Starts a batch of mojo invocations with dependencies between them, see {@link MojoExecutionBatch}.
+     *
+     * @param env The execution environment
+     * @return The empty batch
+     */
+    public static MojoExecutionBatch batch(ExecutionEnvironment env) {
+        return new MojoExecutionBatch(env);
+    }
+
+    static MojoExecutionResult execute(Plugin plugin, String goal, Xpp3Dom configuration, ExecutionEnvironment env)
+            throws MojoExecutionException {
+        return execute(plugin, goal, configuration, env, null);
+    }
+
+    static MojoExecutionResult execute(Plugin plugin, String goal, Xpp3Dom configuration, ExecutionEnvironment env,
+                                       UpToDateCheck check) throws MojoExecutionException {
+        OutputBuffering buffering = env.outputBuffering;
+        if (buffering == null) {
+            return doExecute(plugin, goal, configuration, env, check);
+        }
+        OutputBuffering.Capture capture = buffering.start();
+        boolean failed = true;
+        try {
+            MojoExecutionResult result = doExecute(plugin, goal, configuration, env, check);
+            failed = false;
+            return result;
+        } finally {
+            capture.close(failed);
+        }
+    }
+
+    private static MojoExecutionResult doExecute(Plugin plugin, String goal, Xpp3Dom configuration,
+                                                 ExecutionEnvironment env, UpToDateCheck check)
+            throws MojoExecutionException {
+        logger.debug("Running executeMojo for {}", plugin);
+        if (configuration == null) {
+            throw new NullPointerException("configuration may not be null");
+        }
+        long start = System.nanoTime();
+        TraceRecorder trace = TraceRecorder.forSession(env.getMavenSession());
+        Object event = FlightRecorderEvents.beginExecution();
+        ResourceAccounting accounting = env.resourceAccounting;
+        ResourceUsage.Sample sample = accounting != null ? ResourceUsage.sample() : null;
+        String executionId = null;
+        if (goal != null && goal.length() > 0 && goal.indexOf('#') > -1) {
+            int pos = goal.indexOf('#');
+            executionId = goal.substring(pos + 1);
+            goal = goal.substring(0, pos);
+        }
+
+        if (!env.listeners.isEmpty()) {
+            fireBefore(env.listeners, plugin, goal, executionId);
+        }
 
+        long[] phaseNanos = new long[MojoExecutionResult.Phase.values().length];
+        int phase = 0;
+        long mark = start;
+        Exception failure;
+        try {
             MavenSession session = env.getMavenSession();
 
-            MavenProject currentProject = env.getMavenSession().getCurrentProject();
-            if ((plugin.getVersion() == null || plugin.getVersion().length() == 0) && currentProject != null) {
-                PluginManagement pm = currentProject.getPluginManagement();
-                if (pm != null) {
-                    for (Plugin p : pm.getPlugins()) {
-                        if (plugin.getGroupId().equals(p.getGroupId()) && plugin.getArtifactId().equals(p.getArtifactId())) {
-                            plugin.setVersion(p.getVersion());
-                            break;
-                        }
-                    }
+            plugin = resolvePluginVersion(plugin, session.getCurrentProject());
+            mark = lap(phaseNanos, phase++, mark);
+
+            MojoDescriptor mojoDescriptor = loadMojoDescriptor(plugin, goal, env);
+            mark = lap(phaseNanos, phase++, mark);
+
+            MojoExecution exec = mojoExecution(mojoDescriptor, executionId, configuration);
+            interpolate(env, exec);
+            mark = lap(phaseNanos, phase++, mark);
+
+            String fingerprint = null;
+            MojoExecutionResult.Outcome outcome = MojoExecutionResult.Outcome.EXECUTED;
+            if (check != null) {
+                fingerprint = check.fingerprint(plugin, goal, executionId, exec.getConfiguration());
+                if (check.isUpToDate(plugin, goal, executionId, fingerprint)) {
+                    logger.debug("Skipping {}, it is up to date", plugin);
+                    outcome = MojoExecutionResult.Outcome.UP_TO_DATE;
+                } else {
+                    check.invalidate(plugin, goal, executionId);
                 }
             }
+            mark = lap(phaseNanos, phase++, mark);
 
-            PluginDescriptor pluginDescriptor = MavenCompatibilityHelper.loadPluginDescriptor(plugin, env, session);
-            MojoDescriptor mojoDescriptor = pluginDescriptor.getMojo(goal);
-            if (mojoDescriptor == null) {
-                throw new MojoExecutionException("Could not find goal '" + goal + "' in plugin "
-                    + plugin.getGroupId() + ":"
-                    + plugin.getArtifactId() + ":"
-                    + plugin.getVersion());
+            if (outcome == MojoExecutionResult.Outcome.EXECUTED) {
+                OutputCache cache = check != null ? check.getCache() : null;
+                if (cache != null && restoreOutputs(cache, fingerprint, check, plugin, goal)) {
+                    logger.debug("Restored the outputs of {} from {}", plugin, cache.getDirectory());
+                    outcome = MojoExecutionResult.Outcome.RESTORED;
+                } else {
+                    env.getPluginManager().executeMojo(session, exec);
+                    if (cache != null) {
+                        storeOutputs(cache, fingerprint, check, plugin, goal);
+                    }
+                }
+                if (check != null) {
+                    check.record(plugin, goal, executionId, fingerprint);
+                }
             }
-            MojoExecution exec = mojoExecution(mojoDescriptor, executionId, configuration);
-            env.getPluginManager().executeMojo(session, exec);
-        } catch (PluginConfigurationException | PluginNotFoundException | InvalidPluginDescriptorException | PluginManagerException | PluginDescriptorParsingException | MojoFailureException | PluginResolutionException e) {
+            long end = System.nanoTime();
+            phaseNanos[phase] = end - mark;
+
+            MojoExecutionResult result = new MojoExecutionResult(plugin, goal, executionId, end - start, phaseNanos,
+                outcome, sample != null ? sample.usage() : null);
+            completed(env, result, null, start, trace, event, accounting);
+            return result;
+        } catch (PluginConfigurationException | PluginManagerException | MojoFailureException e) {
+            failure = new MojoExecutionException("Unable to execute mojo", e);
+        } catch (IOException e) {
+            failure = new MojoExecutionException("Unable to check whether " + plugin.getGroupId() + ":"
+                + plugin.getArtifactId() + ":" + goal + " is up to date", e);
+        } catch (MojoExecutionException | RuntimeException e) {
+            failure = e;
+        }
+
+        long end = System.nanoTime();
+        phaseNanos[phase] = end - mark;
+        completed(env, new MojoExecutionResult(plugin, goal, executionId, end - start, phaseNanos,
+            MojoExecutionResult.Outcome.EXECUTED, sample != null ? sample.usage() : null), failure, start, trace, event,
+            accounting);
+        throw rethrow(failure);
+    }
+
+    /**
+     * @return whether the outputs were restored. The cache is best-effort, so a cache that cannot be read is a miss.
+     */
+    private static boolean restoreOutputs(OutputCache cache, String fingerprint, UpToDateCheck check, Plugin plugin,
+                                          String goal) {
+        try {
+            return cache.restore(fingerprint, check.outputPaths());
+        } catch (IOException e) {
+            logger.warn("Unable to restore the outputs of " + plugin.getGroupId() + ":" + plugin.getArtifactId() + ":"
+                + goal + " from " + cache.getDirectory() + ", executing it", e);
+            return false;
+        }
+    }
+
+    private static void storeOutputs(OutputCache cache, String fingerprint, UpToDateCheck check, Plugin plugin,
+                                     String goal) {
+        try {
+            cache.store(fingerprint, check.outputPaths());
+        } catch (IOException e) {
+            logger.warn("Unable to store the outputs of " + plugin.getGroupId() + ":" + plugin.getArtifactId() + ":"
+                + goal + " in " + cache.getDirectory(), e);
+        }
+    }
+
+    static MojoExecutionResult execute(PreparedMojo prepared, ExecutionEnvironment env, Element[] overrides)
+            throws MojoExecutionException {
+        OutputBuffering buffering = env.outputBuffering;
+        if (buffering == null) {
+            return doExecute(prepared, env, overrides);
+        }
+        OutputBuffering.Capture capture = buffering.start();
+        boolean failed = true;
+        try {
+            MojoExecutionResult result = doExecute(prepared, env, overrides);
+            failed = false;
+            return result;
+        } finally {
+            capture.close(failed);
+        }
+    }
+
+    private static MojoExecutionResult doExecute(PreparedMojo prepared, ExecutionEnvironment env, Element[] overrides)
+            throws MojoExecutionException {
+        Plugin plugin = prepared.getPlugin();
+        String goal = prepared.getGoal();
+        String executionId = prepared.getExecutionId();
+        long start = System.nanoTime();
+        TraceRecorder trace = TraceRecorder.forSession(env.getMavenSession());
+        Object event = FlightRecorderEvents.beginExecution();
+        ResourceAccounting accounting = env.resourceAccounting;
+        ResourceUsage.Sample sample = accounting != null ? ResourceUsage.sample() : null;
+
+        if (!env.listeners.isEmpty()) {
+            fireBefore(env.listeners, plugin, goal, executionId);
+        }
+
+        long[] phaseNanos = new long[MojoExecutionResult.Phase.values().length];
+        int phase = MojoExecutionResult.Phase.CONFIGURATION_MERGE.ordinal();
+        long mark = start;
+        Exception failure;
+        try {
+            MojoExecution exec = newMojoExecution(prepared.getMojoDescriptor(), executionId,
+                prepared.configuration(overrides));
+            interpolate(env, exec);
+            mark = lap(phaseNanos, phase, mark);
+            phase = MojoExecutionResult.Phase.EXECUTION.ordinal();
+
+            env.getPluginManager().executeMojo(env.getMavenSession(), exec);
+            long end = System.nanoTime();
+            phaseNanos[phase] = end - mark;
+
+            MojoExecutionResult result = new MojoExecutionResult(plugin, goal, executionId, end - start, phaseNanos,
+                MojoExecutionResult.Outcome.EXECUTED, sample != null ? sample.usage() : null);
+            completed(env, result, null, start, trace, event, accounting);
+            return result;
+        } catch (PluginConfigurationException | PluginManagerException | MojoFailureException e) {
+            failure = new MojoExecutionException("Unable to execute mojo", e);
+        } catch (MojoExecutionException | RuntimeException e) {
+            failure = e;
+        }
+
+        long end = System.nanoTime();
+        phaseNanos[phase] = end - mark;
+        completed(env, new MojoExecutionResult(plugin, goal, executionId, end - start, phaseNanos,
+            MojoExecutionResult.Outcome.EXECUTED, sample != null ? sample.usage() : null), failure, start, trace, event,
+            accounting);
+        throw rethrow(failure);
+    }
+
+    static MojoDescriptor loadMojoDescriptor(Plugin plugin, String goal, ExecutionEnvironment env)
+            throws MojoExecutionException {
+        PluginDescriptor pluginDescriptor;
+        try {
+            pluginDescriptor = MavenCompatibilityHelper.loadPluginDescriptor(plugin, env, env.getMavenSession());
+        } catch (PluginNotFoundException | InvalidPluginDescriptorException | PluginDescriptorParsingException | PluginResolutionException e) {
             throw new MojoExecutionException("Unable to execute mojo", e);
         }
+        MojoDescriptor mojoDescriptor = pluginDescriptor.getMojo(goal);
+        if (mojoDescriptor == null) {
+            throw new MojoExecutionException("Could not find goal '" + goal + "' in plugin "
+                + plugin.getGroupId() + ":"
+                + plugin.getArtifactId() + ":"
+                + plugin.getVersion());
+        }
+        return mojoDescriptor;
+    }
+
+    private static MojoExecutionException rethrow(Exception failure) {
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        return (MojoExecutionException) failure;
+    }
+
+    private static void fireBefore(List<MojoExecutorListener> listeners, Plugin plugin, String goal,
+                                   String executionId) {
+        for (MojoExecutorListener listener : listeners) {
+            try {
+                listener.beforeMojoExecution(plugin, goal, executionId);
+            } catch (RuntimeException e) {
+                logger.warn("Listener " + listener + " failed", e);
+            }
+        }
+    }
+
+    private static void fireAfter(List<MojoExecutorListener> listeners, MojoExecutionResult result) {
+        for (MojoExecutorListener listener : listeners) {
+            try {
+                listener.afterMojoExecution(result);
+            } catch (RuntimeException e) {
+                logger.warn("Listener " + listener + " failed", e);
+            }
+        }
+    }
+
+    private static void fireFailed(List<MojoExecutorListener> listeners, MojoExecutionResult result,
+                                   Exception failure) {
+        for (MojoExecutorListener listener : listeners) {
+            try {
+                listener.mojoExecutionFailed(result, failure);
+            } catch (RuntimeException e) {
+                logger.warn("Listener " + listener + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * Reports a completed execution to the listeners, the resource accounting, JFR and the trace of the session.
+     */
+    private static void completed(ExecutionEnvironment env, MojoExecutionResult result, Exception failure,
+                                  long start, TraceRecorder trace, Object event, ResourceAccounting accounting) {
+        List<MojoExecutorListener> listeners = env.listeners;
+        if (!listeners.isEmpty()) {
+            if (failure == null) {
+                fireAfter(listeners, result);
+            } else {
+                fireFailed(listeners, result, failure);
+            }
+        }
+        if (accounting != null) {
+            accounting.record(result, listeners);
+        }
+        ExecutionMetrics metrics = env.executionMetrics;
+        if (metrics != null) {
+            metrics.record(result, failure != null);
+        }
+        if (event != null || trace != null) {
+            MavenProject project = currentProject(env);
+            String outcome = failure == null ? result.getOutcome().name() : "FAILED";
+            FlightRecorderEvents.commitExecution(event, project, result.getPlugin(), result.getGoal(),
+                result.getExecutionId(), outcome);
+            if (trace != null) {
+                trace.execution(project, result, start, outcome);
+            }
+        }
+    }
+
+    private static MavenProject currentProject(ExecutionEnvironment env) {
+        return env.getMavenProject() != null ? env.getMavenProject() : env.getMavenSession().getCurrentProject();
+    }
+
+    private static long lap(long[] phaseNanos, int phase, long mark) {
+        long now = System.nanoTime();
+        phaseNanos[phase] = now - mark;
+        return now;
+    }
+
+    /**
+     * Resolves a missing plugin version from the build plugins and plugin management of the project. The given plugin
+     * is never modified, so that callers may share it between threads and projects.
+     *
+     * @return the given plugin if it has a version or none was found, otherwise a copy with the resolved version
+     */
+    static Plugin resolvePluginVersion(Plugin plugin, MavenProject currentProject) {
+        if ((plugin.getVersion() == null || plugin.getVersion().length() == 0) && currentProject != null) {
+            String version = PluginVersionIndex.versionOf(currentProject, plugin.getGroupId(), plugin.getArtifactId());
+            if (version != null) {
+                Plugin resolved = plugin.clone();
+                resolved.setVersion(version);
+                return resolved;
+            }
+        }
+        return plugin;
+    }
+
+    static MojoExecution mojoExecution(MojoDescriptor mojoDescriptor, String executionId,
+                                       Xpp3Dom configuration) {
+        return newMojoExecution(mojoDescriptor, executionId, mergeDefaults(mojoDescriptor, configuration));
+    }
+
+    static Xpp3Dom mergeDefaults(MojoDescriptor mojoDescriptor, Xpp3Dom configuration) {
+        return MojoConfigurationCache.merge(mojoDescriptor, configuration);
+    }
+
+    private static void interpolate(ExecutionEnvironment env, MojoExecution exec) {
+        ExpressionCache expressions = env.expressionCache;
+        MavenSession session = env.getMavenSession();
+        if (expressions != null && session.getCurrentProject() != null) {
+            exec.setConfiguration(expressions.interpolate(exec.getConfiguration(), exec.getMojoDescriptor(),
+                session.getCurrentProject(), () -> new PluginParameterExpressionEvaluator(session, exec)));
+        }
     }
 
-    private static MojoExecution mojoExecution(MojoDescriptor mojoDescriptor, String executionId,
-                                               Xpp3Dom configuration) {
-        configuration = Xpp3DomUtils.mergeXpp3Dom(configuration, toXpp3Dom(mojoDescriptor.getMojoConfiguration()));
+    private static MojoExecution newMojoExecution(MojoDescriptor mojoDescriptor, String executionId,
+                                                  Xpp3Dom configuration) {
         if (executionId != null) {
             MojoExecution mojoExecution = new MojoExecution(mojoDescriptor, executionId);
             mojoExecution.setConfiguration(configuration);
@@ -135,6 +589,21 @@ public class MojoExecutor {
         }
     }
 
+    private static final class DefaultExecutorHolder {
+        static final Executor EXECUTOR = Executors.newFixedThreadPool(
+            Integer.getInteger("mojoexecutor.asyncThreads", Runtime.getRuntime().availableProcessors()),
+            new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "mojo-executor-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    }
+
     /**
      * Constructs the {@link ExecutionEnvironment} instance fluently
      *
@@ -179,6 +648,30 @@ public class MojoExecutor {
         return dom;
     }
 
+    /**
+     * Starts a configuration that is written directly to the Maven-native XML format, for large configurations built
+     * from collections or streams.
+     *
+     * @return a builder of the {@code <configuration>} element
+     */
+    public static ConfigurationBuilder configurationBuilder() {
+        return new ConfigurationBuilder("configuration");
+    }
+
+    /**
+     * Interns a configuration into an immutable tree that shares its equal elements, names and values with all other
+     * interned configurations. Configurations kept across many executions, for example one per project of a large
+     * reactor, then hold a single copy of what they have in common, and executing them skips copying and comparing the
+     * shared elements. Modifying the result or its elements throws an {@link UnsupportedOperationException}; copy it
+     * with {@link Xpp3Dom#Xpp3Dom(Xpp3Dom)} to modify it.
+     *
+     * @param configuration The configuration, which is not modified
+     * @return the interned configuration
+     */
+    public static Xpp3Dom internConfiguration(Xpp3Dom configuration) {
+        return ConfigurationInterner.intern(configuration);
+    }
+
     /**
      * Defines the plugin without its version or dependencies.
      *
@@ -391,13 +884,15 @@ public class MojoExecutor {
      * Element wrapper class for configuration elements
      */
     public static class Element {
+        private static final Attributes NO_ATTRIBUTES = new Attributes();
+
         private final Element[] children;
         private final String name;
         private final String text;
         private final Attributes attributes;
 
         public Element(String name, Element... children) {
-            this(name, null, new Attributes(), children);
+            this(name, null, NO_ATTRIBUTES, children);
         }
 
         public Element(String name, Attributes attributes, Element... children) {
@@ -408,7 +903,7 @@ public class MojoExecutor {
             this.name = name;
             this.text = text;
             this.children = children;
-            this.attributes = new Attributes();
+            this.attributes = NO_ATTRIBUTES;
         }
 
         public Element(String name, String text, Attributes attributes, Element... children) {
@@ -465,6 +960,11 @@ public class MojoExecutor {
         private final MavenProject mavenProject;
         private final MavenSession mavenSession;
         private final BuildPluginManager pluginManager;
+        final List<MojoExecutorListener> listeners = new CopyOnWriteArrayList<>();
+        volatile OutputBuffering outputBuffering;
+        volatile ResourceAccounting resourceAccounting;
+        volatile ExpressionCache expressionCache;
+        volatile ExecutionMetrics executionMetrics;
 
         public ExecutionEnvironment(MavenProject mavenProject,
                                     MavenSession mavenSession,
@@ -478,6 +978,7 @@ public class MojoExecutor {
             this.mavenProject = mavenProject;
             this.mavenSession = mavenSession;
             this.pluginManager = pluginManager;
+            this.executionMetrics = ExecutionMetrics.ifEnabled(mavenSession);
         }
 
         public ExecutionEnvironment(MavenSession mavenSession,
@@ -496,5 +997,115 @@ public class MojoExecutor {
         public BuildPluginManager getPluginManager() {
             return pluginManager;
         }
+
+        /**
+         * Registers a listener notified about every mojo execution in this environment, including asynchronous and
+         * batched ones.
+         *
+         * @param listener the listener
+         * @return this environment
+         */
+        public ExecutionEnvironment addListener(MojoExecutorListener listener) {
+            if (listener == null) {
+                throw new NullPointerException("listener may not be null");
+            }
+            listeners.add(listener);
+            return this;
+        }
+
+        /**
+         * @param listener the listener to remove
+         * @return this environment
+         */
+        public ExecutionEnvironment removeListener(MojoExecutorListener listener) {
+            listeners.remove(listener);
+            return this;
+        }
+
+        /**
+         * @return the registered listeners
+         */
+        public List<MojoExecutorListener> getListeners() {
+            return Collections.unmodifiableList(listeners);
+        }
+
+        /**
+         * Buffers the console output of each mojo execution in this environment and writes it in one piece when the
+         * execution completes, so that the output of concurrent executions does not interleave.
+         *
+         * @param buffering the buffering, or {@code null} to write output directly
+         * @return this environment
+         */
+        public ExecutionEnvironment bufferOutput(OutputBuffering buffering) {
+            this.outputBuffering = buffering;
+            return this;
+        }
+
+        /**
+         * @return the output buffering, or {@code null} if output is written directly
+         */
+        public OutputBuffering getOutputBuffering() {
+            return outputBuffering;
+        }
+
+        /**
+         * Measures the CPU time, allocations and garbage collections of each mojo execution in this environment. The
+         * usage is available from {@link MojoExecutionResult#getResourceUsage()} and summed up by the accounting.
+         *
+         * @param accounting the accounting, may be shared between environments, or {@code null} to measure nothing
+         * @return this environment
+         */
+        public ExecutionEnvironment accountResources(ResourceAccounting accounting) {
+            this.resourceAccounting = accounting;
+            return this;
+        }
+
+        /**
+         * @return the resource accounting, or {@code null} if resources are not measured
+         */
+        public ResourceAccounting getResourceAccounting() {
+            return resourceAccounting;
+        }
+
+        /**
+         * Resolves the {@code ${...}} expressions of the configuration of each mojo execution in this environment
+         * before Maven configures the mojo, evaluating each expression once per project for all executions using the
+         * cache. Expressions the cache cannot resolve are left for Maven.
+         *
+         * @param cache the cache, usually {@link ExpressionCache#forSession}, or {@code null} to leave all expressions
+         *              for Maven
+         * @return this environment
+         */
+        public ExecutionEnvironment interpolateExpressions(ExpressionCache cache) {
+            this.expressionCache = cache;
+            return this;
+        }
+
+        /**
+         * @return the expression cache, or {@code null} if expressions are left for Maven
+         */
+        public ExpressionCache getExpressionCache() {
+            return expressionCache;
+        }
+
+        /**
+         * Records each mojo execution in this environment into the given metrics. Environments record into the
+         * metrics of their session if those were enabled by {@link ExecutionMetrics#forSession} before the
+         * environment was created.
+         *
+         * @param metrics the metrics, or {@code null} to record nothing
+         * @return this environment
+         */
+        public ExecutionEnvironment recordMetrics(ExecutionMetrics metrics) {
+            this.executionMetrics = metrics;
+            return this;
+        }
+
+        /**
+         * @return the metrics executions are recorded into, or {@code null} if nothing is recorded
+         */
+        public ExecutionMetrics getExecutionMetrics() {
+            return executionMetrics;
+        }
     }
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.model.Plugin;
+
+/**
+ * Receives notifications about the mojo executions of an {@link MojoExecutor.ExecutionEnvironment}. Listeners are
+ * called on the executing thread, so they must be thread-safe when executions run concurrently, and should return
+ * quickly. Exceptions thrown by listeners are logged and otherwise ignored.
+ *
+ * @see MojoExecutor.ExecutionEnvironment#addListener(MojoExecutorListener)
+ */
+public interface MojoExecutorListener {
+    /**
+     * Called before an execution starts.
+     *
+     * @param plugin      the plugin to execute; its version may not be resolved yet
+     * @param goal        the goal to execute, without the execution id
+     * @param executionId the execution id, or {@code null} if none was given
+     */
+    default void beforeMojoExecution(Plugin plugin, String goal, String executionId) {
+    }
+
+    /**
+     * Called after an execution completed successfully.
+     *
+     * @param result the execution result, including the time spent in each {@link MojoExecutionResult.Phase}
+     */
+    default void afterMojoExecution(MojoExecutionResult result) {
+    }
+
+    /**
+     * Called after an execution failed.
+     *
+     * @param result  the partial execution result, with the time spent in the phases up to and including the one
+     *                that failed
+     * @param failure the exception thrown by the execution
+     */
+    default void mojoExecutionFailed(MojoExecutionResult result, Exception failure) {
+    }
+
+    /**
+     * Called after an execution used more resources than allowed by the budgets of its {@link ResourceAccounting}, in
+     * addition to {@link #afterMojoExecution} or {@link #mojoExecutionFailed}.
+     *
+     * @param result     the execution result, including its {@link MojoExecutionResult#getResourceUsage()}
+     * @param accounting the accounting with the exceeded budgets
+     */
+    default void resourceBudgetExceeded(MojoExecutionResult result, ResourceAccounting accounting) {
+    }
+}
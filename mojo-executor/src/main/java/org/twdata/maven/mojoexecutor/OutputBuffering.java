@@ -0,0 +1,232 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Buffers the console output of each mojo execution and writes it in one piece when the execution completes, so that
+ * the output of concurrent executions does not interleave.
+ * <p>
+ * Output is kept in memory up to {@link #memoryLimit(long)} bytes and spills to a temporary file beyond that. Output
+ * beyond {@link #maxSize(long)} bytes is discarded and reported when the buffer is written. With
+ * {@link #onlyOnFailure(boolean)}, the output of successful executions is discarded altogether.
+ *
+ * @see MojoExecutor.ExecutionEnvironment#bufferOutput(OutputBuffering)
+ */
+public class OutputBuffering {
+    private static final Logger logger = LoggerFactory.getLogger(OutputBuffering.class);
+
+    private long memoryLimit = 1024 * 1024;
+    private long maxSize = 64 * 1024 * 1024;
+    private boolean onlyOnFailure;
+
+    /**
+     * @param bytes the number of bytes kept in memory before spilling to a temporary file, 1 MB by default
+     * @return this buffering
+     */
+    public OutputBuffering memoryLimit(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("memoryLimit may not be negative");
+        }
+        this.memoryLimit = bytes;
+        return this;
+    }
+
+    /**
+     * @param bytes the number of bytes buffered per execution before further output is discarded, 64 MB by default
+     * @return this buffering
+     */
+    public OutputBuffering maxSize(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("maxSize may not be negative");
+        }
+        this.maxSize = bytes;
+        return this;
+    }
+
+    /**
+     * @param onlyOnFailure whether to discard the output of successful executions
+     * @return this buffering
+     */
+    public OutputBuffering onlyOnFailure(boolean onlyOnFailure) {
+        this.onlyOnFailure = onlyOnFailure;
+        return this;
+    }
+
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public boolean isOnlyOnFailure() {
+        return onlyOnFailure;
+    }
+
+    /**
+     * Starts capturing the output of the current thread.
+     */
+    Capture start() {
+        return new Capture(new Buffer(memoryLimit, maxSize));
+    }
+
+    /**
+     * The output captured for one execution.
+     */
+    final class Capture {
+        private final Buffer buffer;
+        private final ThreadOutput.Scope scope;
+
+        private Capture(Buffer buffer) {
+            this.buffer = buffer;
+            this.scope = ThreadOutput.redirect(buffer);
+        }
+
+        /**
+         * Stops capturing and writes the captured output, unless the execution succeeded and only the output of
+         * failed executions is wanted.
+         *
+         * @param failed whether the execution failed
+         */
+        void close(boolean failed) {
+            scope.close();
+            try {
+                if (failed || !onlyOnFailure) {
+                    buffer.writeTo(System.out);
+                }
+            } catch (IOException e) {
+                logger.warn("Unable to write the buffered output", e);
+            } finally {
+                buffer.release();
+            }
+        }
+    }
+
+    /**
+     * A byte buffer that spills to a temporary file beyond its memory limit and drops everything beyond its size.
+     */
+    static final class Buffer extends OutputStream {
+        private final long memoryLimit;
+        private final long maxSize;
+        private final ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        private Path file;
+        private OutputStream fileOut;
+        private long size;
+        private long discarded;
+
+        Buffer(long memoryLimit, long maxSize) {
+            this.memoryLimit = memoryLimit;
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            int accepted = (int) Math.min(len, maxSize - size);
+            discarded += len - accepted;
+            if (accepted <= 0) {
+                return;
+            }
+            int inMemory = (int) Math.max(0, Math.min(accepted, memoryLimit - size));
+            memory.write(b, off, inMemory);
+            if (accepted > inMemory) {
+                if (fileOut == null) {
+                    try {
+                        file = Files.createTempFile("mojo-executor-output", ".log");
+                        fileOut = new BufferedOutputStream(Files.newOutputStream(file));
+                    } catch (IOException e) {
+                        // stop buffering first, the warning itself may be written to this buffer
+                        discarded += accepted - inMemory;
+                        size = maxSize;
+                        logger.warn("Unable to spill the buffered output to a temporary file, discarding the rest", e);
+                        return;
+                    }
+                }
+                fileOut.write(b, off + inMemory, accepted - inMemory);
+            }
+            size += accepted;
+        }
+
+        long size() {
+            return size;
+        }
+
+        long discarded() {
+            return discarded;
+        }
+
+        /**
+         * Writes the buffered bytes to the given stream, holding its lock so that no other output can interleave. The
+         * stream lock is taken first, like threads writing to the buffer through {@link System#out} do.
+         */
+        void writeTo(PrintStream out) throws IOException {
+            synchronized (out) {
+                synchronized (this) {
+                    if (size == 0 && discarded == 0) {
+                        return;
+                    }
+                    memory.writeTo(out);
+                    if (fileOut != null) {
+                        fileOut.flush();
+                        try (InputStream in = Files.newInputStream(file)) {
+                            byte[] chunk = new byte[8192];
+                            int read;
+                            while ((read = in.read(chunk)) > 0) {
+                                out.write(chunk, 0, read);
+                            }
+                        }
+                    }
+                    if (discarded > 0) {
+                        out.write(("[" + discarded + " more bytes of output were discarded]" + System.lineSeparator())
+                            .getBytes(Charset.defaultCharset()));
+                    }
+                    out.flush();
+                }
+            }
+        }
+
+        synchronized void release() {
+            memory.reset();
+            if (fileOut != null) {
+                try {
+                    fileOut.close();
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    logger.debug("Unable to delete " + file, e);
+                }
+                fileOut = null;
+            }
+        }
+    }
+}
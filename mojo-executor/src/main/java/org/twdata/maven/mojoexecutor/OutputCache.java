@@ -0,0 +1,439 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A local, content-addressed store of mojo outputs, used through {@link UpToDateCheck#cache(OutputCache)}. After a
+ * successful execution the files below the declared outputs are stored under the fingerprint of the execution, and
+ * an execution with a stored fingerprint restores them instead of running the mojo. Fingerprints do not depend on the
+ * location of the inputs, so a store can be shared by the builds of several workspaces on the same machine.
+ * <p>
+ * The store keeps one manifest per fingerprint in {@code entries} and each distinct file content once in
+ * {@code objects}. When it grows beyond its maximum size, the least recently used manifests are evicted and the
+ * contents no longer referenced are deleted. Restoring overwrites the stored files and leaves other files in the
+ * outputs alone. Files are copied with {@link FileChannel#transferTo}, or hard linked if enabled; hard linked outputs
+ * are read-only, since modifying them in place would corrupt the store.
+ * <p>
+ * Instances are thread-safe and several processes may use the same directory; a content evicted while being restored
+ * makes the restore fail and the mojo execute.
+ */
+public class OutputCache {
+    private static final String MANIFEST_HEADER = "mojo-executor-output-cache 2";
+    // contents younger than this are never swept, as their manifest may still be being written
+    private static final long SWEEP_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final Path directory;
+    private final Path entries;
+    private final Path objects;
+    private volatile long maxBytes = 1024L * 1024 * 1024;
+    private volatile boolean hardLinks;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bytesRestored = new AtomicLong();
+    private final AtomicLong bytesStored = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param directory the directory of the store, created when needed
+     */
+    public OutputCache(File directory) {
+        if (directory == null) {
+            throw new NullPointerException("directory may not be null");
+        }
+        this.directory = directory.toPath();
+        this.entries = this.directory.resolve("entries");
+        this.objects = this.directory.resolve("objects");
+    }
+
+    /**
+     * @param bytes the size beyond which least recently used entries are evicted, 1 GB by default
+     * @return this cache
+     */
+    public OutputCache maxSize(long bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxBytes = bytes;
+        return this;
+    }
+
+    /**
+     * @param enabled whether to restore files as hard links to the store, falling back to copies where the file
+     *                system does not support them; disabled by default
+     * @return this cache
+     */
+    public OutputCache hardLinks(boolean enabled) {
+        this.hardLinks = enabled;
+        return this;
+    }
+
+    public File getDirectory() {
+        return directory.toFile();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getBytesRestored() {
+        return bytesRestored.get();
+    }
+
+    public long getBytesStored() {
+        return bytesStored.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Restores the outputs stored under the given key.
+     *
+     * @param key     the fingerprint of the execution
+     * @param outputs the declared outputs, by their path relative to the state directory
+     * @return whether the outputs were restored
+     * @throws IOException if the outputs cannot be written
+     */
+    boolean restore(String key, Map<String, File> outputs) throws IOException {
+        Path entry = entries.resolve(key);
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(entry, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            misses.incrementAndGet();
+            return false;
+        }
+        if (lines.isEmpty() || !MANIFEST_HEADER.equals(lines.get(0))) {
+            misses.incrementAndGet();
+            return false;
+        }
+
+        List<String[]> records = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] record = line.split("\t", -1);
+            if (!isValid(record, outputs)) {
+                misses.incrementAndGet();
+                return false;
+            }
+            records.add(record);
+        }
+
+        long bytes = 0;
+        try {
+            for (String[] record : records) {
+                Path output = outputs.get(record[1]).toPath();
+                if ("D".equals(record[0])) {
+                    Files.createDirectories(output);
+                    continue;
+                }
+                Path target = record[2].isEmpty() ? output : output.resolve(record[2]);
+                Path parent = target.getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                restoreFile(objects.resolve(record[3]), target);
+                bytes += Long.parseLong(record[4]);
+            }
+        } catch (NoSuchFileException e) {
+            // evicted by another process
+            misses.incrementAndGet();
+            return false;
+        } catch (IOException e) {
+            misses.incrementAndGet();
+            throw e;
+        }
+        touch(entry);
+        hits.incrementAndGet();
+        bytesRestored.addAndGet(bytes);
+        return true;
+    }
+
+    private boolean isValid(String[] record, Map<String, File> outputs) {
+        try {
+            // stored for an output that is no longer declared
+            if (!outputs.containsKey(record[1])) {
+                return false;
+            }
+            if ("F".equals(record[0])) {
+                Long.parseLong(record[4]);
+                return Files.isRegularFile(objects.resolve(record[3]));
+            }
+            return "D".equals(record[0]);
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Stores the outputs under the given key and evicts old entries if the store became too large.
+     *
+     * @param key     the fingerprint of the execution
+     * @param outputs the declared outputs, by their path relative to the state directory
+     * @throws IOException if the outputs cannot be stored
+     */
+    void store(String key, Map<String, File> outputs) throws IOException {
+        Files.createDirectories(entries);
+        Files.createDirectories(objects);
+        StringBuilder manifest = new StringBuilder(MANIFEST_HEADER).append('\n');
+        for (Map.Entry<String, File> declared : outputs.entrySet()) {
+            String outputPath = declared.getKey();
+            Path output = declared.getValue().toPath();
+            if (Files.isDirectory(output)) {
+                manifest.append("D\t").append(outputPath).append('\n');
+                List<Path> files;
+                try (Stream<Path> walk = Files.walk(output)) {
+                    files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+                for (Path file : files) {
+                    String relativePath = output.relativize(file).toString().replace(File.separatorChar, '/');
+                    appendFile(manifest, outputPath, relativePath, file);
+                }
+            } else if (Files.isRegularFile(output)) {
+                appendFile(manifest, outputPath, "", output);
+            }
+        }
+        Path temporary = entries.resolve("." + UUID.randomUUID());
+        Files.write(temporary, manifest.toString().getBytes(StandardCharsets.UTF_8));
+        move(temporary, entries.resolve(key));
+        evict();
+    }
+
+    private void appendFile(StringBuilder manifest, String outputPath, String relativePath, Path file)
+            throws IOException {
+        String hash = Fingerprints.contentHash(file);
+        long size = Files.size(file);
+        Path object = objects.resolve(hash);
+        if (!Files.exists(object)) {
+            Path temporary = objects.resolve("." + UUID.randomUUID());
+            copy(file, temporary);
+            temporary.toFile().setReadOnly();
+            try {
+                Files.move(temporary, object, StandardCopyOption.ATOMIC_MOVE);
+                bytesStored.addAndGet(size);
+            } catch (FileAlreadyExistsException e) {
+                delete(temporary);
+            } catch (AtomicMoveNotSupportedException e) {
+                if (Files.exists(object)) {
+                    delete(temporary);
+                } else {
+                    Files.move(temporary, object, StandardCopyOption.REPLACE_EXISTING);
+                    bytesStored.addAndGet(size);
+                }
+            }
+        }
+        manifest.append("F\t").append(outputPath).append('\t').append(relativePath).append('\t').append(hash)
+            .append('\t').append(size).append('\n');
+    }
+
+    private void restoreFile(Path object, Path target) throws IOException {
+        if (Files.exists(target)) {
+            delete(target);
+        }
+        if (hardLinks) {
+            try {
+                Files.createLink(target, object);
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                // different file system, copy instead
+            }
+        }
+        copy(object, target);
+    }
+
+    // contents shared by several manifests count once, and only free space once no remaining manifest references them
+    private synchronized void evict() throws IOException {
+        List<Entry> all = new ArrayList<>();
+        Map<String, Long> sizes = new HashMap<>();
+        Map<String, Integer> references = new HashMap<>();
+        try (Stream<Path> list = Files.list(entries)) {
+            for (Path manifest : (Iterable<Path>) list::iterator) {
+                if (!manifest.getFileName().toString().startsWith(".")) {
+                    Entry entry = new Entry(manifest, lastModified(manifest), manifestObjects(manifest));
+                    all.add(entry);
+                    sizes.putAll(entry.objects);
+                    for (String object : entry.objects.keySet()) {
+                        references.merge(object, 1, Integer::sum);
+                    }
+                }
+            }
+        }
+        long total = 0;
+        for (long size : sizes.values()) {
+            total += size;
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+
+        all.sort(Comparator.comparingLong(entry -> entry.lastUsed));
+        for (Entry entry : all) {
+            if (total <= maxBytes) {
+                break;
+            }
+            Files.deleteIfExists(entry.manifest);
+            for (Map.Entry<String, Long> object : entry.objects.entrySet()) {
+                if (references.merge(object.getKey(), -1, Integer::sum) == 0) {
+                    total -= object.getValue();
+                }
+            }
+            evictions.incrementAndGet();
+        }
+        sweep();
+    }
+
+    private void sweep() throws IOException {
+        Set<String> referenced = new HashSet<>();
+        try (Stream<Path> list = Files.list(entries)) {
+            for (Path manifest : (Iterable<Path>) list::iterator) {
+                referenced.addAll(manifestObjects(manifest).keySet());
+            }
+        }
+        long threshold = System.currentTimeMillis() - SWEEP_GRACE_MILLIS;
+        try (Stream<Path> list = Files.list(objects)) {
+            for (Path object : (Iterable<Path>) list::iterator) {
+                if (!referenced.contains(object.getFileName().toString()) && lastModified(object) < threshold) {
+                    delete(object);
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+        final Path manifest;
+        final long lastUsed;
+        final Map<String, Long> objects;
+
+        Entry(Path manifest, long lastUsed, Map<String, Long> objects) {
+            this.manifest = manifest;
+            this.lastUsed = lastUsed;
+            this.objects = objects;
+        }
+    }
+
+    /**
+     * @return the sizes of the distinct contents referenced by the manifest, by their hash. Malformed records, which
+     *         {@link #restore} never restores, are skipped.
+     */
+    private static Map<String, Long> manifestObjects(Path manifest) {
+        Map<String, Long> objects = new HashMap<>();
+        for (String line : readManifest(manifest)) {
+            String[] record = line.split("\t", -1);
+            if ("F".equals(record[0]) && record.length >= 5) {
+                try {
+                    objects.put(record[3], Long.parseLong(record[4]));
+                } catch (NumberFormatException e) {
+                    // edited or truncated
+                }
+            }
+        }
+        return objects;
+    }
+
+    private static List<String> readManifest(Path manifest) {
+        try {
+            List<String> lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+            if (!lines.isEmpty() && MANIFEST_HEADER.equals(lines.get(0))) {
+                return lines.subList(1, lines.size());
+            }
+        } catch (IOException e) {
+            // evicted concurrently, or not a manifest
+        }
+        return new ArrayList<>();
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // evicted concurrently
+        }
+    }
+
+    private static void copy(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void delete(Path path) throws IOException {
+        try {
+            Files.deleteIfExists(path);
+        } catch (AccessDeniedException e) {
+            // read-only files cannot be deleted on Windows
+            path.toFile().setWritable(true);
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d hits, %d misses, %d bytes restored, %d bytes stored, %d evictions", directory,
+            getHits(), getMisses(), getBytesRestored(), getBytesStored(), getEvictions());
+    }
+}
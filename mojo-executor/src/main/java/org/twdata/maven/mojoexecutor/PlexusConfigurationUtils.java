@@ -3,6 +3,9 @@ package org.twdata.maven.mojoexecutor;
 import org.codehaus.plexus.configuration.PlexusConfiguration;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 public class PlexusConfigurationUtils {
     private PlexusConfigurationUtils() {
         throw new AssertionError("non-instantiable");
@@ -10,19 +13,74 @@ public class PlexusConfigurationUtils {
 
     /**
      * Converts PlexusConfiguration to a Xpp3Dom.
+     * <p>
+     * The tree is converted iteratively, so the stack depth does not grow with the depth of the configuration.
      *
      * @param config the PlexusConfiguration. Must not be {@code null}.
      * @return the Xpp3Dom representation of the PlexusConfiguration
      */
     public static Xpp3Dom toXpp3Dom(PlexusConfiguration config) {
-        Xpp3Dom result = new Xpp3Dom(config.getName());
-        result.setValue(config.getValue(null));
+        return convert(config, new Xpp3Dom(config.getName()));
+    }
+
+    /**
+     * Converts PlexusConfiguration to a Xpp3Dom for a single execution.
+     * <p>
+     * The configuration is converted as by {@link #toXpp3Dom(PlexusConfiguration)}, but {@link MojoExecutor} merges
+     * the mojo defaults into the result directly instead of into a copy, so the configuration is converted once and
+     * never copied. Pass the result to a single execution, since that modifies it.
+     *
+     * @param config the PlexusConfiguration. Must not be {@code null}.
+     * @return the Xpp3Dom representation of the PlexusConfiguration
+     */
+    public static Xpp3Dom asXpp3Dom(PlexusConfiguration config) {
+        return convert(config, new SingleUse(config.getName()));
+    }
+
+    /**
+     * @return whether the given configuration was created by {@link #asXpp3Dom(PlexusConfiguration)}
+     */
+    static boolean isSingleUse(Xpp3Dom dom) {
+        return dom instanceof SingleUse;
+    }
+
+    private static Xpp3Dom convert(PlexusConfiguration config, Xpp3Dom result) {
+        fill(result, config);
+        // the configurations whose children are still to be converted, and their converted nodes
+        Deque<PlexusConfiguration> pending = new ArrayDeque<>();
+        Deque<Xpp3Dom> converted = new ArrayDeque<>();
+        pending.push(config);
+        converted.push(result);
+        while (!pending.isEmpty()) {
+            PlexusConfiguration parent = pending.pop();
+            Xpp3Dom dom = converted.pop();
+            for (PlexusConfiguration child : parent.getChildren()) {
+                Xpp3Dom childDom = fill(new Xpp3Dom(child.getName()), child);
+                dom.addChild(childDom);
+                if (child.getChildCount() > 0) {
+                    pending.push(child);
+                    converted.push(childDom);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Xpp3Dom fill(Xpp3Dom dom, PlexusConfiguration config) {
+        dom.setValue(config.getValue(null));
         for (String name : config.getAttributeNames()) {
-            result.setAttribute(name, config.getAttribute(name));
+            dom.setAttribute(name, config.getAttribute(name));
         }
-        for (PlexusConfiguration child : config.getChildren()) {
-            result.addChild(toXpp3Dom(child));
+        return dom;
+    }
+
+    /**
+     * The root of a configuration converted for a single execution. It only marks the tree, so it compares and copies
+     * like any other Xpp3Dom.
+     */
+    private static final class SingleUse extends Xpp3Dom {
+        SingleUse(String name) {
+            super(name);
         }
-        return result;
     }
 }
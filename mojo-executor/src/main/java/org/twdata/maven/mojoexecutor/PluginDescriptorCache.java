@@ -0,0 +1,202 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Exclusion;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches plugin descriptors resolved by {@link MavenCompatibilityHelper#loadPluginDescriptor} for the lifetime of a
+ * Maven session, so that repeated executions of the same plugin skip plugin resolution.
+ * <p>
+ * Entries are keyed by the plugin coordinates, the plugin dependencies and the remote plugin repositories used for
+ * resolution. The cache is shared by all clones of a session (as created for each module in parallel builds) and is
+ * discarded together with the session.
+ */
+public class PluginDescriptorCache {
+
+    private static final Map<Object, PluginDescriptorCache> caches = new WeakHashMap<>();
+
+    private final ConcurrentMap<Key, PluginDescriptor> descriptors = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    PluginDescriptorCache() {
+    }
+
+    /**
+     * Returns the descriptor cache of the given session, creating it on first use.
+     *
+     * @param session the Maven session. Must not be {@code null}.
+     * @return the cache shared by the session and all of its clones
+     */
+    public static PluginDescriptorCache forSession(MavenSession session) {
+        return forScope(MavenCompatibilityHelper.getRepositorySession(session), session);
+    }
+
+    static PluginDescriptorCache forScope(Object repositorySession, MavenSession session) {
+        // clones of a session share the repository session, so prefer it as the scope
+        Object scope = repositorySession != null ? repositorySession : session;
+        synchronized (caches) {
+            PluginDescriptorCache cache = caches.get(scope);
+            if (cache == null) {
+                cache = new PluginDescriptorCache();
+                caches.put(scope, cache);
+            }
+            return cache;
+        }
+    }
+
+    PluginDescriptor get(Key key) {
+        PluginDescriptor descriptor = descriptors.get(key);
+        if (descriptor != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return descriptor;
+    }
+
+    PluginDescriptor put(Key key, PluginDescriptor descriptor) {
+        PluginDescriptor existing = descriptors.putIfAbsent(key, descriptor);
+        return existing != null ? existing : descriptor;
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups that required the plugin to be resolved
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of cached plugin descriptors
+     */
+    public int size() {
+        return descriptors.size();
+    }
+
+    /**
+     * Discards all cached descriptors and resets the counters.
+     */
+    public void clear() {
+        descriptors.clear();
+        hits.set(0);
+        misses.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "PluginDescriptorCache[size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses() + "]";
+    }
+
+    /**
+     * Identifies a plugin resolution request. {@link Plugin#equals} only compares group and artifact ids, so the
+     * relevant coordinates are captured explicitly.
+     */
+    static final class Key {
+        private final String groupId;
+        private final String artifactId;
+        private final String version;
+        private final List<String> dependencies;
+        private final List<?> repositories;
+        private final int hashCode;
+
+        Key(Plugin plugin, List<?> repositories) {
+            this.groupId = plugin.getGroupId();
+            this.artifactId = plugin.getArtifactId();
+            this.version = plugin.getVersion();
+            this.dependencies = dependencyKeys(plugin.getDependencies());
+            this.repositories = repositories != null
+                ? Collections.unmodifiableList(new ArrayList<>(repositories))
+                : Collections.emptyList();
+            int result = String.valueOf(groupId).hashCode();
+            result = 31 * result + String.valueOf(artifactId).hashCode();
+            result = 31 * result + String.valueOf(version).hashCode();
+            result = 31 * result + this.dependencies.hashCode();
+            result = 31 * result + this.repositories.hashCode();
+            this.hashCode = result;
+        }
+
+        static List<String> dependencyKeys(List<Dependency> dependencies) {
+            if (dependencies == null || dependencies.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<String> keys = new ArrayList<>(dependencies.size());
+            for (Dependency dependency : dependencies) {
+                StringBuilder key = new StringBuilder(dependency.getManagementKey())
+                    .append(':').append(dependency.getVersion())
+                    .append(':').append(dependency.getScope())
+                    .append(':').append(dependency.isOptional());
+                for (Exclusion exclusion : dependency.getExclusions()) {
+                    key.append(":!").append(exclusion.getGroupId()).append(':').append(exclusion.getArtifactId());
+                }
+                keys.add(key.toString());
+            }
+            return keys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hashCode == other.hashCode
+                && equal(groupId, other.groupId)
+                && equal(artifactId, other.artifactId)
+                && equal(version, other.version)
+                && dependencies.equals(other.dependencies)
+                && repositories.equals(other.repositories);
+        }
+
+        private static boolean equal(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public String toString() {
+            return groupId + ":" + artifactId + ":" + version + " " + dependencies + " " + repositories;
+        }
+    }
+}
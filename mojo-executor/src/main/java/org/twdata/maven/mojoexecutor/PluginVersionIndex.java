@@ -0,0 +1,111 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginManagement;
+import org.apache.maven.project.MavenProject;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Index of the plugin versions declared by a project, by groupId and artifactId. Versions of build plugins take
+ * precedence over managed versions, as in the effective model, where the build plugins already carry the managed
+ * versions unless they declare their own.
+ * <p>
+ * An index is built on first use and rebuilt when the build, the plugin management or their plugin lists are
+ * replaced, or plugins are added or removed. Changing the version of a plugin in place is not detected.
+ */
+final class PluginVersionIndex {
+    private static final Map<Model, PluginVersionIndex> indexes = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Build build;
+    private final PluginManagement pluginManagement;
+    private final List<Plugin> buildPlugins;
+    private final int buildPluginCount;
+    private final List<Plugin> managedPlugins;
+    private final int managedPluginCount;
+    private final Map<String, String> versions = new HashMap<>();
+
+    private PluginVersionIndex(Build build) {
+        this.build = build;
+        this.pluginManagement = build != null ? build.getPluginManagement() : null;
+        this.buildPlugins = build != null ? build.getPlugins() : null;
+        this.buildPluginCount = buildPlugins != null ? buildPlugins.size() : 0;
+        this.managedPlugins = pluginManagement != null ? pluginManagement.getPlugins() : null;
+        this.managedPluginCount = managedPlugins != null ? managedPlugins.size() : 0;
+        index(buildPlugins);
+        index(managedPlugins);
+    }
+
+    /**
+     * @param project    the project
+     * @param groupId    the plugin groupId
+     * @param artifactId the plugin artifactId
+     * @return the version of the plugin declared by the project, or {@code null} if none
+     */
+    static String versionOf(MavenProject project, String groupId, String artifactId) {
+        Model model = project.getModel();
+        if (model == null) {
+            return null;
+        }
+        PluginVersionIndex index = indexes.get(model);
+        if (index == null || !index.isCurrent(model.getBuild())) {
+            index = new PluginVersionIndex(model.getBuild());
+            indexes.put(model, index);
+        }
+        return index.versions.get(groupId + ":" + artifactId);
+    }
+
+    private void index(List<Plugin> plugins) {
+        if (plugins == null) {
+            return;
+        }
+        for (Plugin plugin : plugins) {
+            String version = plugin.getVersion();
+            if (version != null && version.length() > 0) {
+                versions.putIfAbsent(plugin.getGroupId() + ":" + plugin.getArtifactId(), version);
+            }
+        }
+    }
+
+    private boolean isCurrent(Build currentBuild) {
+        if (currentBuild != build) {
+            return false;
+        }
+        if (build == null) {
+            return true;
+        }
+        PluginManagement currentPluginManagement = build.getPluginManagement();
+        if (currentPluginManagement != pluginManagement) {
+            return false;
+        }
+        List<Plugin> currentBuildPlugins = build.getPlugins();
+        if (currentBuildPlugins != buildPlugins
+            || (currentBuildPlugins != null ? currentBuildPlugins.size() : 0) != buildPluginCount) {
+            return false;
+        }
+        List<Plugin> currentManagedPlugins = pluginManagement != null ? pluginManagement.getPlugins() : null;
+        return currentManagedPlugins == managedPlugins
+            && (currentManagedPlugins != null ? currentManagedPlugins.size() : 0) == managedPluginCount;
+    }
+}
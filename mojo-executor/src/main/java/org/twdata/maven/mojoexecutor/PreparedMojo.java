@@ -0,0 +1,121 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.model.Plugin;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.twdata.maven.mojoexecutor.MojoExecutor.Element;
+import org.twdata.maven.mojoexecutor.MojoExecutor.ExecutionEnvironment;
+
+/**
+ * A mojo invocation with its plugin version, mojo descriptor and configuration resolved once, to be executed any
+ * number of times, also concurrently. Created by
+ * {@link MojoExecutor#prepare(Plugin, String, Xpp3Dom, ExecutionEnvironment)}.
+ * <p>
+ * The plugin version is resolved against the project of the environment the invocation was prepared in, and stays
+ * the same when executing it in another environment.
+ */
+public final class PreparedMojo {
+    private final Plugin plugin;
+    private final String goal;
+    private final String executionId;
+    private final MojoDescriptor mojoDescriptor;
+    private final Xpp3Dom configuration;
+    private final ExecutionEnvironment env;
+
+    PreparedMojo(Plugin plugin, String goal, String executionId, MojoDescriptor mojoDescriptor,
+                 Xpp3Dom configuration, ExecutionEnvironment env) {
+        this.plugin = plugin;
+        this.goal = goal;
+        this.executionId = executionId;
+        this.mojoDescriptor = mojoDescriptor;
+        this.configuration = configuration;
+        this.env = env;
+    }
+
+    /**
+     * Executes the mojo in the environment it was prepared in.
+     *
+     * @param overrides Configuration elements replacing the top-level elements of the same name
+     * @return The execution result
+     * @throws MojoExecutionException If there are any exceptions executing the mojo
+     */
+    public MojoExecutionResult execute(Element... overrides) throws MojoExecutionException {
+        return MojoExecutor.execute(this, env, overrides);
+    }
+
+    /**
+     * Executes the mojo in the given environment, for example for another project of the reactor.
+     *
+     * @param env       The execution environment
+     * @param overrides Configuration elements replacing the top-level elements of the same name
+     * @return The execution result
+     * @throws MojoExecutionException If there are any exceptions executing the mojo
+     */
+    public MojoExecutionResult execute(ExecutionEnvironment env, Element... overrides)
+            throws MojoExecutionException {
+        return MojoExecutor.execute(this, env, overrides);
+    }
+
+    /**
+     * @return the plugin, with its version resolved; must not be modified
+     */
+    public Plugin getPlugin() {
+        return plugin;
+    }
+
+    public String getGoal() {
+        return goal;
+    }
+
+    public String getExecutionId() {
+        return executionId;
+    }
+
+    public MojoDescriptor getMojoDescriptor() {
+        return mojoDescriptor;
+    }
+
+    /**
+     * @return a copy of the configuration merged with the mojo defaults
+     */
+    public Xpp3Dom getConfiguration() {
+        return new Xpp3Dom(configuration);
+    }
+
+    Xpp3Dom configuration(Element[] overrides) {
+        // the merged configuration is shared by all executions, so each modifies its own copy
+        Xpp3Dom result = new Xpp3Dom(configuration);
+        for (Element override : overrides) {
+            Xpp3Dom dom = override.toDom();
+            for (int i = result.getChildCount() - 1; i >= 0; i--) {
+                if (dom.getName().equals(result.getChild(i).getName())) {
+                    result.removeChild(i);
+                }
+            }
+            result.addChild(dom);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return plugin.getGroupId() + ":" + plugin.getArtifactId() + ":" + plugin.getVersion() + ":" + goal
+            + (executionId != null ? " (" + executionId + ")" : "");
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the {@link ResourceUsage} of mojo executions and sums it up per plugin goal, optionally warning about
+ * executions exceeding a CPU or allocation budget.
+ * <p>
+ * Accountings created with {@link #withCpuBudget} or {@link #withAllocationBudget} share the totals of the accounting
+ * they were created from, so executions with different budgets can still be summarized together. Executions exceeding
+ * a budget are logged and reported to {@link MojoExecutorListener#resourceBudgetExceeded}.
+ *
+ * @see MojoExecutor.ExecutionEnvironment#accountResources(ResourceAccounting)
+ */
+public class ResourceAccounting {
+    private static final Logger logger = LoggerFactory.getLogger(ResourceAccounting.class);
+
+    private final ConcurrentMap<String, Totals> totals;
+    private final long cpuBudgetNanos;
+    private final long allocationBudgetBytes;
+
+    public ResourceAccounting() {
+        this(new ConcurrentHashMap<>(), 0, 0);
+    }
+
+    private ResourceAccounting(ConcurrentMap<String, Totals> totals, long cpuBudgetNanos, long allocationBudgetBytes) {
+        this.totals = totals;
+        this.cpuBudgetNanos = cpuBudgetNanos;
+        this.allocationBudgetBytes = allocationBudgetBytes;
+    }
+
+    /**
+     * @param budget the CPU time an execution may use, or {@code 0} for no budget
+     * @param unit   the time unit of the budget
+     * @return an accounting with the given CPU budget, sharing the totals of this accounting
+     */
+    public ResourceAccounting withCpuBudget(long budget, TimeUnit unit) {
+        return new ResourceAccounting(totals, unit.toNanos(budget), allocationBudgetBytes);
+    }
+
+    /**
+     * @param bytes the bytes an execution may allocate, or {@code 0} for no budget
+     * @return an accounting with the given allocation budget, sharing the totals of this accounting
+     */
+    public ResourceAccounting withAllocationBudget(long bytes) {
+        return new ResourceAccounting(totals, cpuBudgetNanos, bytes);
+    }
+
+    public long getCpuBudget(TimeUnit unit) {
+        return unit.convert(cpuBudgetNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getAllocationBudget() {
+        return allocationBudgetBytes;
+    }
+
+    /**
+     * @return the totals per plugin goal, the most CPU time first
+     */
+    public List<Totals> getTotals() {
+        List<Totals> sorted = new ArrayList<>(totals.values());
+        sorted.sort(Comparator.comparingLong(Totals::getCpuNanos).thenComparingLong(Totals::getAllocatedBytes)
+            .reversed());
+        return sorted;
+    }
+
+    /**
+     * Adds an execution to the totals and checks it against the budgets.
+     */
+    void record(MojoExecutionResult result, List<MojoExecutorListener> listeners) {
+        ResourceUsage usage = result.getResourceUsage();
+        String key = result.getPlugin().getGroupId() + ":" + result.getPlugin().getArtifactId() + ":"
+            + result.getGoal();
+        totals.computeIfAbsent(key, Totals::new).add(usage);
+
+        String exceeded = null;
+        if (cpuBudgetNanos > 0 && usage.getCpuNanos() > cpuBudgetNanos) {
+            exceeded = "CPU budget: " + usage.getCpuTime(TimeUnit.MILLISECONDS) + " ms > "
+                + TimeUnit.NANOSECONDS.toMillis(cpuBudgetNanos) + " ms";
+        } else if (allocationBudgetBytes > 0 && usage.getAllocatedBytes() > allocationBudgetBytes) {
+            exceeded = "allocation budget: " + ResourceUsage.formatBytes(usage.getAllocatedBytes()) + " > "
+                + ResourceUsage.formatBytes(allocationBudgetBytes);
+        }
+        if (exceeded == null) {
+            return;
+        }
+        logger.warn("{} exceeded its {}", result, exceeded);
+        for (MojoExecutorListener listener : listeners) {
+            try {
+                listener.resourceBudgetExceeded(result, this);
+            } catch (RuntimeException e) {
+                logger.warn("Listener " + listener + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * @return a table of the totals, the most CPU time first
+     */
+    @Override
+    public String toString() {
+        StringBuilder table = new StringBuilder(String.format(Locale.ROOT, "%10s %10s %6s %8s %6s  %s",
+            "CPU ms", "alloc MB", "GCs", "GC ms", "runs", "mojo"));
+        for (Totals total : getTotals()) {
+            table.append(System.lineSeparator()).append(total);
+        }
+        return table.toString();
+    }
+
+    /**
+     * The summed up resource usage of the executions of a plugin goal.
+     */
+    public static final class Totals {
+        private final String mojo;
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder cpuNanos = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+        private final LongAdder gcCount = new LongAdder();
+        private final LongAdder gcMillis = new LongAdder();
+
+        private Totals(String mojo) {
+            this.mojo = mojo;
+        }
+
+        private void add(ResourceUsage usage) {
+            executions.increment();
+            cpuNanos.add(Math.max(0, usage.getCpuNanos()));
+            allocatedBytes.add(Math.max(0, usage.getAllocatedBytes()));
+            gcCount.add(usage.getGcCount());
+            gcMillis.add(usage.getGcTime(TimeUnit.MILLISECONDS));
+        }
+
+        /**
+         * @return the plugin goal as {@code groupId:artifactId:goal}
+         */
+        public String getMojo() {
+            return mojo;
+        }
+
+        public long getExecutions() {
+            return executions.sum();
+        }
+
+        public long getCpuNanos() {
+            return cpuNanos.sum();
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes.sum();
+        }
+
+        public long getGcCount() {
+            return gcCount.sum();
+        }
+
+        public long getGcMillis() {
+            return gcMillis.sum();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%10d %10d %6d %8d %6d  %s",
+                TimeUnit.NANOSECONDS.toMillis(getCpuNanos()), getAllocatedBytes() / (1024 * 1024), getGcCount(),
+                getGcMillis(), getExecutions(), mojo);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The resources used by a mojo execution: the CPU time and heap allocations of the executing thread, and the garbage
+ * collections of the JVM while it ran.
+ * <p>
+ * CPU time and allocations do not include threads started by the mojo. Garbage collections are counted for the whole
+ * JVM, so they include collections caused by concurrent executions. Values the JVM does not support are {@code -1}.
+ *
+ * @see MojoExecutionResult#getResourceUsage()
+ */
+public final class ResourceUsage {
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME_SUPPORTED = isCpuTimeSupported();
+
+    private final long cpuNanos;
+    private final long allocatedBytes;
+    private final long gcCount;
+    private final long gcMillis;
+
+    ResourceUsage(long cpuNanos, long allocatedBytes, long gcCount, long gcMillis) {
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.gcCount = gcCount;
+        this.gcMillis = gcMillis;
+    }
+
+    private static boolean isCpuTimeSupported() {
+        try {
+            return threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Samples the counters of the current thread and the JVM.
+     */
+    static Sample sample() {
+        return new Sample();
+    }
+
+    /**
+     * @return the CPU time of the executing thread in nanoseconds, or {@code -1} if not supported
+     */
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    /**
+     * @param unit the time unit
+     * @return the CPU time of the executing thread in the given unit, or {@code -1} if not supported
+     */
+    public long getCpuTime(TimeUnit unit) {
+        return cpuNanos < 0 ? -1 : unit.convert(cpuNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the bytes allocated on the heap by the executing thread, or {@code -1} if not supported
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return the number of garbage collections in the JVM during the execution
+     */
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    /**
+     * @param unit the time unit
+     * @return the accumulated time of the garbage collections in the JVM during the execution
+     */
+    public long getGcTime(TimeUnit unit) {
+        return unit.convert(gcMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return (cpuNanos < 0 ? "cpu n/a" : "cpu " + getCpuTime(TimeUnit.MILLISECONDS) + " ms")
+            + (allocatedBytes < 0 ? ", allocated n/a" : ", allocated " + formatBytes(allocatedBytes))
+            + ", " + gcCount + " GCs (" + gcMillis + " ms)";
+    }
+
+    /**
+     * @return the size in MB, or in KB or bytes if it is smaller, so that small sizes do not show as 0 MB
+     */
+    static String formatBytes(long bytes) {
+        if (bytes >= 1024 * 1024) {
+            return bytes / (1024 * 1024) + " MB";
+        } else if (bytes >= 1024) {
+            return bytes / 1024 + " KB";
+        }
+        return bytes + " bytes";
+    }
+
+    /**
+     * The counters at the start of an execution.
+     */
+    static final class Sample {
+        private final long threadId = Thread.currentThread().getId();
+        private final long cpuNanos = CPU_TIME_SUPPORTED ? threads.getCurrentThreadCpuTime() : -1;
+        private final long allocatedBytes = Allocations.allocatedBytes(threadId);
+        private final long gcCount;
+        private final long gcMillis;
+
+        private Sample() {
+            long[] gc = gc();
+            gcCount = gc[0];
+            gcMillis = gc[1];
+        }
+
+        /**
+         * @return the resources used since this sample was taken; must be called on the same thread
+         */
+        ResourceUsage usage() {
+            long cpu = cpuNanos >= 0 ? threads.getCurrentThreadCpuTime() - cpuNanos : -1;
+            long allocated = allocatedBytes >= 0 ? Allocations.allocatedBytes(threadId) - allocatedBytes : -1;
+            long[] gc = gc();
+            return new ResourceUsage(cpu, allocated, gc[0] - gcCount, gc[1] - gcMillis);
+        }
+
+        private static long[] gc() {
+            long count = 0;
+            long millis = 0;
+            List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+            for (GarbageCollectorMXBean collector : collectors) {
+                count += Math.max(0, collector.getCollectionCount());
+                millis += Math.max(0, collector.getCollectionTime());
+            }
+            return new long[] {count, millis};
+        }
+    }
+
+    /**
+     * Per-thread allocation counters are an extension of HotSpot and OpenJ9, so they are accessed separately.
+     */
+    private static final class Allocations {
+        private static final com.sun.management.ThreadMXBean threads = allocationCounters();
+
+        private static com.sun.management.ThreadMXBean allocationCounters() {
+            try {
+                ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+                if (bean instanceof com.sun.management.ThreadMXBean) {
+                    com.sun.management.ThreadMXBean counters = (com.sun.management.ThreadMXBean) bean;
+                    if (counters.isThreadAllocatedMemorySupported() && counters.isThreadAllocatedMemoryEnabled()) {
+                        return counters;
+                    }
+                }
+            } catch (LinkageError | UnsupportedOperationException e) {
+                // not supported by this JVM
+            }
+            return null;
+        }
+
+        static long allocatedBytes(long threadId) {
+            return threads != null ? threads.getThreadAllocatedBytes(threadId) : -1;
+        }
+    }
+}
@@ -0,0 +1,523 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.plugin.logging.Log;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Locale;
+
+/**
+ * Redirects the console output of a single thread, such as the log output of a mojo executed on it, without affecting
+ * other threads.
+ * <p>
+ * Maven writes its log to {@link System#out} and {@link System#err}, and its log levels are global. While a scope is
+ * open, both streams are replaced by streams that route each write by the writing thread: threads in a scope (and
+ * threads they start while it is open) write to the scope, all other threads to the original streams. A stream cached
+ * by an slf4j-simple based logger, as Maven's loggers are, is replaced the same way; other logging backends are only
+ * routed if they write to {@link System#out} or {@link System#err}. The original streams are put back when the last
+ * scope is closed.
+ * <p>
+ * Suppressed log statements are dropped at the logger where possible, so that their messages are not even formatted:
+ * loggers wrapped by {@link #suppressible(Log)} report all levels as disabled, and other loggers can check
+ * {@link #isSuppressed()}. The Maven plugin wraps the log of each mojo executed on a suppressed thread.
+ */
+public final class ThreadOutput {
+    private static final InheritableThreadLocal<Scope> current = new InheritableThreadLocal<>();
+    private static final Object lock = new Object();
+    private static int openScopes;
+    private static PrintStream originalOut;
+    private static PrintStream originalErr;
+    private static PrintStream routedOut;
+    private static PrintStream routedErr;
+    private static LoggerStream loggerStream;
+
+    private ThreadOutput() {
+        throw new AssertionError("non-instantiable");
+    }
+
+    /**
+     * Discards all console output of the current thread until the returned scope is closed. Suppressed output is
+     * dropped before it is encoded and, for the {@code printf} and {@code format} methods and
+     * {@link #suppressible(Log) suppressible} logs, before it is formatted.
+     *
+     * @return the scope, to be closed by the current thread
+     */
+    public static Scope suppress() {
+        return open(null);
+    }
+
+    /**
+     * Redirects all console output of the current thread to the given stream until the returned scope is closed.
+     * Output to {@link System#err} is redirected to the same stream, which keeps its order relative to the rest.
+     *
+     * @param target the stream to write to, which must accept writes from several threads
+     * @return the scope, to be closed by the current thread
+     */
+    public static Scope redirect(OutputStream target) {
+        if (target == null) {
+            throw new NullPointerException("target may not be null");
+        }
+        return open(target);
+    }
+
+    /**
+     * @return whether the output of the current thread is discarded, which loggers can check before formatting
+     */
+    public static boolean isSuppressed() {
+        Scope scope = active();
+        return scope != null && scope.target == null;
+    }
+
+    /**
+     * Wraps a log, such as the log of a mojo, so that all its levels are disabled on threads whose output is
+     * {@link #suppress() suppressed}. Mojos that check the level before building a message then skip that too.
+     *
+     * @param log the log to wrap
+     * @return the suppressible log
+     */
+    public static Log suppressible(Log log) {
+        if (log == null) {
+            throw new NullPointerException("log may not be null");
+        }
+        return log instanceof SuppressibleLog ? log : new SuppressibleLog(log);
+    }
+
+    /**
+     * @return the scope of the current thread, to be {@link #adopt(Scope) adopted} by the threads running its tasks
+     */
+    static Scope capture() {
+        return active();
+    }
+
+    /**
+     * Routes the output of the current thread like that of the thread that captured the scope, until
+     * {@link #release(Scope)} is called with the returned scope. Unlike scopes inherited by new threads, this works for
+     * pooled threads.
+     *
+     * @param scope the captured scope, or {@code null} to write to the original streams
+     * @return the previous scope of the current thread
+     */
+    static Scope adopt(Scope scope) {
+        Scope previous = current.get();
+        current.set(scope);
+        return previous;
+    }
+
+    static void release(Scope previous) {
+        current.set(previous);
+    }
+
+    private static Scope open(OutputStream target) {
+        synchronized (lock) {
+            if (openScopes++ == 0) {
+                originalOut = System.out;
+                originalErr = System.err;
+                routedOut = new RoutingPrintStream(originalOut);
+                routedErr = new RoutingPrintStream(originalErr);
+                System.setOut(routedOut);
+                System.setErr(routedErr);
+                loggerStream = LoggerStream.route();
+            }
+        }
+        Scope scope = new Scope(current.get(), target);
+        current.set(scope);
+        return scope;
+    }
+
+    private static Scope active() {
+        Scope scope = current.get();
+        while (scope != null && scope.closed) {
+            scope = scope.previous;
+        }
+        return scope;
+    }
+
+    /**
+     * The redirection of the output of a thread. Scopes may be nested; closing one restores the redirection that was
+     * in effect when it was opened.
+     */
+    public static final class Scope implements AutoCloseable {
+        private final Scope previous;
+        private final OutputStream target;
+        private volatile boolean closed;
+
+        private Scope(Scope previous, OutputStream target) {
+            this.previous = previous;
+            this.target = target;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (current.get() == this) {
+                current.set(previous);
+            }
+            synchronized (lock) {
+                if (--openScopes == 0) {
+                    // leave the streams alone if they were replaced again in the meantime
+                    if (System.out == routedOut) {
+                        System.setOut(originalOut);
+                    }
+                    if (System.err == routedErr) {
+                        System.setErr(originalErr);
+                    }
+                    if (loggerStream != null) {
+                        loggerStream.restore();
+                        loggerStream = null;
+                    }
+                    originalOut = originalErr = routedOut = routedErr = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * The stream of Maven's logger (slf4j-simple with {@code cacheOutputStream=true}, or a log file), which is looked
+     * up once when the logger is initialized and therefore not affected by {@link System#setOut(PrintStream)}.
+     */
+    private static final class LoggerStream {
+        private final Object configuration;
+        private final Field outputChoiceField;
+        private final Object original;
+        private final Object routed;
+
+        private LoggerStream(Object configuration, Field outputChoiceField, Object original, Object routed) {
+            this.configuration = configuration;
+            this.outputChoiceField = outputChoiceField;
+            this.original = original;
+            this.routed = routed;
+        }
+
+        /**
+         * @return the replaced stream, or {@code null} if the logger is not slf4j-simple or follows {@code System.out}
+         */
+        static LoggerStream route() {
+            Logger logger = LoggerFactory.getLogger(ThreadOutput.class);
+            try {
+                // slf4j-simple and its copies, such as the logger of Maven 4, keep their configuration in the logger
+                Field configurationField = null;
+                for (Class<?> type = logger.getClass(); type != null && configurationField == null;
+                        type = type.getSuperclass()) {
+                    for (Field field : type.getDeclaredFields()) {
+                        if (field.getName().equals("CONFIG_PARAMS") && Modifier.isStatic(field.getModifiers())) {
+                            configurationField = field;
+                        }
+                    }
+                }
+                if (configurationField == null) {
+                    logger.debug("Only routing System.out and System.err, the logger {} has no slf4j-simple "
+                        + "configuration", logger.getClass().getName());
+                    return null;
+                }
+                Object configuration = accessible(configurationField).get(null);
+                if (configuration == null) {
+                    return null;
+                }
+                Field outputChoiceField = accessible(configuration.getClass().getDeclaredField("outputChoice"));
+                Object original = outputChoiceField.get(configuration);
+                Class<?> outputChoiceClass = original.getClass();
+                String type = String.valueOf(accessible(outputChoiceClass.getDeclaredField("outputChoiceType"))
+                    .get(original));
+                if (type.equals("SYS_OUT") || type.equals("SYS_ERR")) {
+                    return null;
+                }
+                PrintStream stream = (PrintStream) accessible(outputChoiceClass.getDeclaredField("targetPrintStream"))
+                    .get(original);
+                PrintStream routedStream = stream == originalOut ? routedOut
+                    : stream == originalErr ? routedErr : new RoutingPrintStream(stream);
+                Constructor<?> constructor = outputChoiceClass.getDeclaredConstructor(PrintStream.class);
+                constructor.setAccessible(true);
+                Object routed = constructor.newInstance(routedStream);
+                outputChoiceField.set(configuration, routed);
+                return new LoggerStream(configuration, outputChoiceField, original, routed);
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                logger.debug("Only routing System.out and System.err, unable to route the stream of the logger {}",
+                    logger.getClass().getName(), e);
+                return null;
+            }
+        }
+
+        void restore() {
+            try {
+                if (outputChoiceField.get(configuration) == routed) {
+                    outputChoiceField.set(configuration, original);
+                }
+            } catch (IllegalAccessException e) {
+                // accessible since route()
+            }
+        }
+
+        private static Field accessible(Field field) {
+            field.setAccessible(true);
+            return field;
+        }
+    }
+
+    /**
+     * A log whose levels are all disabled while the output of the calling thread is suppressed.
+     */
+    private static final class SuppressibleLog implements Log {
+        private final Log log;
+
+        SuppressibleLog(Log log) {
+            this.log = log;
+        }
+
+        @Override
+        public boolean isDebugEnabled() {
+            return !isSuppressed() && log.isDebugEnabled();
+        }
+
+        @Override
+        public void debug(CharSequence content) {
+            if (!isSuppressed()) {
+                log.debug(content);
+            }
+        }
+
+        @Override
+        public void debug(CharSequence content, Throwable error) {
+            if (!isSuppressed()) {
+                log.debug(content, error);
+            }
+        }
+
+        @Override
+        public void debug(Throwable error) {
+            if (!isSuppressed()) {
+                log.debug(error);
+            }
+        }
+
+        @Override
+        public boolean isInfoEnabled() {
+            return !isSuppressed() && log.isInfoEnabled();
+        }
+
+        @Override
+        public void info(CharSequence content) {
+            if (!isSuppressed()) {
+                log.info(content);
+            }
+        }
+
+        @Override
+        public void info(CharSequence content, Throwable error) {
+            if (!isSuppressed()) {
+                log.info(content, error);
+            }
+        }
+
+        @Override
+        public void info(Throwable error) {
+            if (!isSuppressed()) {
+                log.info(error);
+            }
+        }
+
+        @Override
+        public boolean isWarnEnabled() {
+            return !isSuppressed() && log.isWarnEnabled();
+        }
+
+        @Override
+        public void warn(CharSequence content) {
+            if (!isSuppressed()) {
+                log.warn(content);
+            }
+        }
+
+        @Override
+        public void warn(CharSequence content, Throwable error) {
+            if (!isSuppressed()) {
+                log.warn(content, error);
+            }
+        }
+
+        @Override
+        public void warn(Throwable error) {
+            if (!isSuppressed()) {
+                log.warn(error);
+            }
+        }
+
+        @Override
+        public boolean isErrorEnabled() {
+            return !isSuppressed() && log.isErrorEnabled();
+        }
+
+        @Override
+        public void error(CharSequence content) {
+            if (!isSuppressed()) {
+                log.error(content);
+            }
+        }
+
+        @Override
+        public void error(CharSequence content, Throwable error) {
+            if (!isSuppressed()) {
+                log.error(content, error);
+            }
+        }
+
+        @Override
+        public void error(Throwable error) {
+            if (!isSuppressed()) {
+                log.error(error);
+            }
+        }
+    }
+
+    private static final class RoutingOutputStream extends OutputStream {
+        private final OutputStream original;
+
+        RoutingOutputStream(OutputStream original) {
+            this.original = original;
+        }
+
+        private OutputStream target() {
+            Scope scope = active();
+            return scope == null ? original : scope.target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            OutputStream target = target();
+            if (target != null) {
+                target.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            OutputStream target = target();
+            if (target != null) {
+                target.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            OutputStream target = target();
+            if (target != null) {
+                target.flush();
+            }
+        }
+    }
+
+    /**
+     * Short-circuits the common printing methods, so that suppressed output costs no encoding or formatting.
+     */
+    private static final class RoutingPrintStream extends PrintStream {
+        RoutingPrintStream(PrintStream original) {
+            super(new RoutingOutputStream(original), true);
+        }
+
+        private static boolean suppressed() {
+            return isSuppressed();
+        }
+
+        @Override
+        public void write(int b) {
+            if (!suppressed()) {
+                super.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] buf, int off, int len) {
+            if (!suppressed()) {
+                super.write(buf, off, len);
+            }
+        }
+
+        @Override
+        public void print(String s) {
+            if (!suppressed()) {
+                super.print(s);
+            }
+        }
+
+        @Override
+        public void print(Object obj) {
+            if (!suppressed()) {
+                super.print(obj);
+            }
+        }
+
+        @Override
+        public void print(char[] s) {
+            if (!suppressed()) {
+                super.print(s);
+            }
+        }
+
+        @Override
+        public void println() {
+            if (!suppressed()) {
+                super.println();
+            }
+        }
+
+        @Override
+        public void println(String x) {
+            if (!suppressed()) {
+                super.println(x);
+            }
+        }
+
+        @Override
+        public void println(Object x) {
+            if (!suppressed()) {
+                super.println(x);
+            }
+        }
+
+        @Override
+        public void println(char[] x) {
+            if (!suppressed()) {
+                super.println(x);
+            }
+        }
+
+        @Override
+        public PrintStream format(String format, Object... args) {
+            if (!suppressed()) {
+                super.format(format, args);
+            }
+            return this;
+        }
+
+        @Override
+        public PrintStream format(Locale l, String format, Object... args) {
+            if (!suppressed()) {
+                super.format(l, format, args);
+            }
+            return this;
+        }
+    }
+}
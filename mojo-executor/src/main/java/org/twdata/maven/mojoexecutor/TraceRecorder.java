@@ -0,0 +1,324 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.project.MavenProject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Records every mojo execution of a Maven session as a span in a trace file in the Chrome Trace Event format, which can
+ * be opened in Perfetto ({@code ui.perfetto.dev}) or {@code chrome://tracing}.
+ * <p>
+ * Each execution is a span on the thread that ran it, carrying the project, plugin coordinates, goal and execution
+ * id, with child spans for the phases of {@link MojoExecutionResult.Phase}. Callers can add their own spans, such as
+ * the time spent waiting for locks. Spans are appended as soon as they complete, so the file is usable while the
+ * build is still running and after it was killed; the format allows the closing bracket to be missing.
+ * <p>
+ * Recording is enabled for a session by the {@value #PROPERTY} property, whose value is the trace file (relative to
+ * the execution root directory), or by {@link #start(MavenSession, File)}. Like the {@link PluginDescriptorCache},
+ * the recorder is shared by all clones of a session.
+ */
+public final class TraceRecorder {
+    /**
+     * The user or system property enabling recording to the given file.
+     */
+    public static final String PROPERTY = "mojoexecutor.trace";
+
+    private static final Logger logger = LoggerFactory.getLogger(TraceRecorder.class);
+
+    // sessions without recorder map to null, so that neither the properties are read nor a failed start is retried
+    // for every execution
+    private static final Map<Object, TraceRecorder> recorders = new WeakHashMap<>();
+    private static volatile Lookup lastLookup;
+
+    private final File file;
+    private final Writer writer;
+    private final long originNanos = System.nanoTime();
+    private final Set<Long> namedThreads = new HashSet<>();
+    private boolean empty = true;
+    private boolean closed;
+
+    private TraceRecorder(File file) throws IOException {
+        this.file = file;
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+        this.writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+        writer.write("[\n");
+        event("M", "process_name", null, 0, 0, 0, args("name", "Maven"));
+        writer.flush();
+    }
+
+    /**
+     * Returns the recorder of the given session, starting one if the {@value #PROPERTY} property is set.
+     *
+     * @param session the Maven session
+     * @return the recorder, or {@code null} if recording is not enabled for the session
+     */
+    public static TraceRecorder forSession(MavenSession session) {
+        Object scope = scope(session);
+        // executions of the session looked up last, usually all of them, do not contend on the lock
+        Lookup last = lastLookup;
+        if (last != null && last.scope.get() == scope) {
+            return last.recorder;
+        }
+        synchronized (recorders) {
+            TraceRecorder recorder;
+            if (recorders.containsKey(scope)) {
+                recorder = recorders.get(scope);
+            } else {
+                recorder = startFromProperty(session);
+                recorders.put(scope, recorder);
+            }
+            lastLookup = new Lookup(scope, recorder);
+            return recorder;
+        }
+    }
+
+    /**
+     * @return the recorder started from the {@value #PROPERTY} property, or {@code null}
+     */
+    private static TraceRecorder startFromProperty(MavenSession session) {
+        Properties userProperties = session.getUserProperties();
+        String path = userProperties != null
+            ? userProperties.getProperty(PROPERTY, System.getProperty(PROPERTY))
+            : System.getProperty(PROPERTY);
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+        File file = new File(path);
+        if (!file.isAbsolute() && session.getExecutionRootDirectory() != null) {
+            file = new File(session.getExecutionRootDirectory(), path);
+        }
+        try {
+            TraceRecorder recorder = new TraceRecorder(file);
+            logger.info("Recording mojo executions to {}", file);
+            return recorder;
+        } catch (IOException e) {
+            logger.warn("Unable to record mojo executions to " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Starts recording the mojo executions of the given session, unless they are recorded already.
+     *
+     * @param session the Maven session
+     * @param file    the trace file, overwritten if it exists
+     * @return the recorder of the session, which may write to another file if it was started before
+     * @throws IOException if the trace file cannot be created
+     */
+    public static TraceRecorder start(MavenSession session, File file) throws IOException {
+        Object scope = scope(session);
+        synchronized (recorders) {
+            TraceRecorder recorder = recorders.get(scope);
+            if (recorder == null) {
+                recorder = new TraceRecorder(file);
+                recorders.put(scope, recorder);
+                lastLookup = null;
+                logger.info("Recording mojo executions to {}", file);
+            }
+            return recorder;
+        }
+    }
+
+    private static Object scope(MavenSession session) {
+        // clones of a session share the repository session, so prefer it as the scope
+        Object repositorySession = MavenCompatibilityHelper.getRepositorySession(session);
+        return repositorySession != null ? repositorySession : session;
+    }
+
+    /**
+     * The recorder of the session looked up last, or {@code null} if it records nothing.
+     */
+    private static final class Lookup {
+        final WeakReference<Object> scope;
+        final TraceRecorder recorder;
+
+        Lookup(Object scope, TraceRecorder recorder) {
+            this.scope = new WeakReference<>(scope);
+            this.recorder = recorder;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Records a completed span on the current thread.
+     *
+     * @param name          the name of the span
+     * @param category      the category of the span, such as {@code mojo} or {@code lock}
+     * @param startNanos    the {@link System#nanoTime()} at which the span started
+     * @param durationNanos the duration of the span
+     * @param args          the arguments shown with the span, may be {@code null}
+     */
+    public void span(String name, String category, long startNanos, long durationNanos, Map<String, ?> args) {
+        Thread thread = Thread.currentThread();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            try {
+                if (namedThreads.add(thread.getId())) {
+                    event("M", "thread_name", null, thread.getId(), 0, 0, args("name", thread.getName()));
+                }
+                event("X", name, category, thread.getId(), startNanos - originNanos, durationNanos, args);
+                writer.flush();
+            } catch (IOException e) {
+                logger.warn("Unable to record mojo executions to " + file + ", stopping", e);
+                closed = true;
+            }
+        }
+    }
+
+    /**
+     * Records a mojo execution with a child span for each of its phases.
+     */
+    void execution(MavenProject project, MojoExecutionResult result, long startNanos, String outcome) {
+        Plugin plugin = result.getPlugin();
+        Map<String, Object> args = new LinkedHashMap<>();
+        if (project != null) {
+            args.put("project", project.getGroupId() + ":" + project.getArtifactId() + ":" + project.getVersion());
+        }
+        args.put("plugin", plugin.getGroupId() + ":" + plugin.getArtifactId() + ":" + plugin.getVersion());
+        args.put("goal", result.getGoal());
+        if (result.getExecutionId() != null) {
+            args.put("executionId", result.getExecutionId());
+        }
+        args.put("outcome", outcome);
+        String name = plugin.getArtifactId() + ":" + result.getGoal()
+            + (result.getExecutionId() != null ? " (" + result.getExecutionId() + ")" : "");
+        span(name, "mojo", startNanos, result.getDurationNanos(), args);
+
+        long phaseStart = startNanos;
+        for (MojoExecutionResult.Phase phase : MojoExecutionResult.Phase.values()) {
+            long nanos = result.getDurationNanos(phase);
+            if (nanos > 0) {
+                span(phase.name().toLowerCase(Locale.ROOT).replace('_', ' '), "phase", phaseStart, nanos, null);
+                phaseStart += nanos;
+            }
+        }
+    }
+
+    /**
+     * Completes the trace file. Later spans are ignored.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writer.write("\n]\n");
+            writer.close();
+        } catch (IOException e) {
+            logger.warn("Unable to complete " + file, e);
+        }
+    }
+
+    /**
+     * Completes the trace file of the given session, if it is recorded.
+     *
+     * @param session the Maven session
+     * @return the completed recorder, or {@code null} if the session was not recorded
+     */
+    public static TraceRecorder close(MavenSession session) {
+        TraceRecorder recorder;
+        synchronized (recorders) {
+            recorder = recorders.remove(scope(session));
+            lastLookup = null;
+        }
+        if (recorder != null) {
+            recorder.close();
+        }
+        return recorder;
+    }
+
+    private void event(String phase, String name, String category, long threadId, long startNanos,
+                       long durationNanos, Map<String, ?> args) throws IOException {
+        StringBuilder json = new StringBuilder(160);
+        json.append(empty ? "" : ",\n").append("{\"name\":");
+        quote(json, name);
+        if (category != null) {
+            json.append(",\"cat\":");
+            quote(json, category);
+        }
+        json.append(",\"ph\":\"").append(phase).append("\",\"pid\":1,\"tid\":").append(threadId);
+        if (phase.equals("X")) {
+            json.append(",\"ts\":").append(micros(startNanos)).append(",\"dur\":").append(micros(durationNanos));
+        }
+        if (args != null && !args.isEmpty()) {
+            json.append(",\"args\":{");
+            boolean first = true;
+            for (Map.Entry<String, ?> arg : args.entrySet()) {
+                json.append(first ? "" : ",");
+                quote(json, arg.getKey());
+                json.append(':');
+                quote(json, String.valueOf(arg.getValue()));
+                first = false;
+            }
+            json.append('}');
+        }
+        json.append('}');
+        writer.write(json.toString());
+        empty = false;
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1000.0);
+    }
+
+    private static void quote(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static Map<String, String> args(String key, String value) {
+        Map<String, String> args = new LinkedHashMap<>();
+        args.put(key, value);
+        return args;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.model.Plugin;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Skips a mojo execution when nothing it depends on changed since its last successful execution. The fingerprint of an
+ * execution covers the plugin coordinates and dependencies, the goal and execution id, the configuration merged with
+ * the mojo defaults, the paths of the declared outputs and the contents of the declared inputs. It is stored in the
+ * state directory after each successful execution, and the next execution is skipped if its fingerprint is the same
+ * and all declared outputs still exist.
+ * <p>
+ * Expressions in the configuration are fingerprinted as written, not as evaluated, so changes to the properties they
+ * refer to must be covered by the inputs. Executions of the same goal are told apart by their execution id. With an
+ * {@link OutputCache}, outputs of earlier executions with the same fingerprint are restored instead of executing the
+ * mojo, even after a clean build or in another workspace.
+ *
+ * @see MojoExecutor#executeMojo(Plugin, String, Xpp3Dom, MojoExecutor.ExecutionEnvironment, UpToDateCheck)
+ */
+public class UpToDateCheck {
+    private final File stateDirectory;
+    private final List<File> inputs = new ArrayList<>();
+    private final List<File> outputs = new ArrayList<>();
+    private OutputCache cache;
+
+    /**
+     * @param stateDirectory the directory to store fingerprints in, usually below the build directory
+     */
+    public UpToDateCheck(File stateDirectory) {
+        if (stateDirectory == null) {
+            throw new NullPointerException("stateDirectory may not be null");
+        }
+        this.stateDirectory = stateDirectory;
+    }
+
+    /**
+     * Declares input files or directories. Directories are hashed recursively.
+     *
+     * @param files the inputs
+     * @return this check
+     */
+    public UpToDateCheck inputs(File... files) {
+        inputs.addAll(Arrays.asList(files));
+        return this;
+    }
+
+    /**
+     * Declares output files or directories, which must exist for the execution to be skipped.
+     *
+     * @param files the outputs
+     * @return this check
+     */
+    public UpToDateCheck outputs(File... files) {
+        outputs.addAll(Arrays.asList(files));
+        return this;
+    }
+
+    /**
+     * Restores the outputs from the given cache instead of executing the mojo, if they were stored there by an
+     * execution with the same fingerprint, and stores them there after executing the mojo.
+     *
+     * @param cache the cache, may be shared between checks
+     * @return this check
+     */
+    public UpToDateCheck cache(OutputCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    public File getStateDirectory() {
+        return stateDirectory;
+    }
+
+    public List<File> getInputs() {
+        return Collections.unmodifiableList(inputs);
+    }
+
+    public List<File> getOutputs() {
+        return Collections.unmodifiableList(outputs);
+    }
+
+    public OutputCache getCache() {
+        return cache;
+    }
+
+    String fingerprint(Plugin plugin, String goal, String executionId, Xpp3Dom configuration) throws IOException {
+        return Fingerprints.fingerprint(plugin, goal, executionId, configuration, inputs, outputPaths().keySet());
+    }
+
+    /**
+     * @return the declared outputs in declaration order, by their path relative to the state directory, which does not
+     *         depend on the location of the workspace
+     */
+    Map<String, File> outputPaths() {
+        Path base = stateDirectory.toPath().toAbsolutePath().normalize();
+        Map<String, File> paths = new LinkedHashMap<>();
+        for (File output : outputs) {
+            Path path = output.toPath().toAbsolutePath().normalize();
+            String relativePath;
+            try {
+                relativePath = base.relativize(path).toString().replace(File.separatorChar, '/');
+            } catch (IllegalArgumentException e) {
+                // on another drive
+                relativePath = path.toString();
+            }
+            paths.put(relativePath, output);
+        }
+        return paths;
+    }
+
+    boolean isUpToDate(Plugin plugin, String goal, String executionId, String fingerprint) throws IOException {
+        Path state = stateFile(plugin, goal, executionId);
+        if (!Files.isRegularFile(state)) {
+            return false;
+        }
+        if (!fingerprint.equals(new String(Files.readAllBytes(state), StandardCharsets.UTF_8).trim())) {
+            return false;
+        }
+        for (File output : outputs) {
+            if (!output.exists()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void record(Plugin plugin, String goal, String executionId, String fingerprint) throws IOException {
+        Path state = stateFile(plugin, goal, executionId);
+        Files.createDirectories(state.getParent());
+        Files.write(state, fingerprint.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void invalidate(Plugin plugin, String goal, String executionId) throws IOException {
+        Files.deleteIfExists(stateFile(plugin, goal, executionId));
+    }
+
+    private Path stateFile(Plugin plugin, String goal, String executionId) {
+        String name = plugin.getGroupId() + "_" + plugin.getArtifactId() + "_" + goal
+            + (executionId != null ? "_" + executionId : "");
+        return stateDirectory.toPath().resolve(name.replaceAll("[^A-Za-z0-9._-]", "_") + ".sha256");
+    }
+}
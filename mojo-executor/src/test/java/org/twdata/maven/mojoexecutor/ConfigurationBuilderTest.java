@@ -0,0 +1,101 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.attribute;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.configuration;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.configurationBuilder;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.element;
+
+public class ConfigurationBuilderTest {
+    @Test
+    public void builderWritesTheSameConfigurationAsElements() {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("user.language", "en");
+        properties.put("parallel", 4);
+
+        Xpp3Dom built = configurationBuilder()
+            .element("outputDirectory", "target/classes")
+            .start("includes").elements("include", Arrays.asList("**/*.java", "**/*.kt")).end()
+            .start("excludes").elements("exclude", Stream.of("**/Test*.java")).end()
+            .start("systemPropertyVariables").entries(properties).end()
+            .start("artifactItems")
+            .forEach(Arrays.asList("junit", "hamcrest"), (builder, artifactId) -> builder
+                .start("artifactItem")
+                .attribute("implementation", "ArtifactItem")
+                .element("artifactId", artifactId)
+                .end())
+            .end()
+            .build();
+
+        Xpp3Dom expected = configuration(
+            element("outputDirectory", "target/classes"),
+            element("includes", element("include", "**/*.java"), element("include", "**/*.kt")),
+            element("excludes", element("exclude", "**/Test*.java")),
+            element("systemPropertyVariables", element("user.language", "en"), element("parallel", "4")),
+            element("artifactItems",
+                element("artifactItem", attribute("implementation", "ArtifactItem"), element("artifactId", "junit")),
+                element("artifactItem", attribute("implementation", "ArtifactItem"),
+                    element("artifactId", "hamcrest")))
+        );
+        assertThat(built, is(expected));
+    }
+
+    @Test
+    public void builderSupportsDeepNesting() {
+        ConfigurationBuilder builder = configurationBuilder();
+        for (int i = 0; i < 100; i++) {
+            builder.start("level" + i);
+        }
+        builder.value("bottom");
+        for (int i = 0; i < 100; i++) {
+            builder.end();
+        }
+
+        Xpp3Dom dom = builder.build();
+        for (int i = 0; i < 100; i++) {
+            dom = dom.getChild("level" + i);
+        }
+        assertThat(dom.getValue(), is("bottom"));
+    }
+
+    @Test
+    public void builderRejectsUnbalancedElements() {
+        try {
+            configurationBuilder().start("includes").build();
+            fail("Expected the unended element to be rejected");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("<includes> was not ended"));
+        }
+        try {
+            configurationBuilder().end();
+            fail("Expected end() at the root to be rejected");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("end() without start()"));
+        }
+    }
+}
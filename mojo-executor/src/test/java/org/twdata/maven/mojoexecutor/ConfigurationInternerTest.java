@@ -0,0 +1,218 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.attribute;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.configuration;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.element;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.internConfiguration;
+
+public class ConfigurationInternerTest {
+    private static final int MODULES = 600;
+    private static final int THREADS = 8;
+
+    @Test
+    public void internedConfigurationsShareEqualElements() {
+        Xpp3Dom first = moduleConfiguration("core");
+        Xpp3Dom second = moduleConfiguration("web");
+
+        Xpp3Dom internedFirst = internConfiguration(first);
+        Xpp3Dom internedSecond = internConfiguration(second);
+
+        assertThat(internedFirst, is(first));
+        assertThat(internedSecond, is(second));
+        assertThat(internedFirst.getChild("includes"), sameInstance(internedSecond.getChild("includes")));
+        assertThat(internedFirst.getChild("finalName"), not(sameInstance(internedSecond.getChild("finalName"))));
+        assertThat(internConfiguration(moduleConfiguration("core")), sameInstance(internedFirst));
+        assertThat(internConfiguration(internedFirst), sameInstance(internedFirst));
+        assertThat(first.getChild("includes"), not(sameInstance(internedFirst.getChild("includes"))));
+    }
+
+    @Test
+    public void internedConfigurationsAreImmutable() {
+        Xpp3Dom interned = internConfiguration(moduleConfiguration("core"));
+        try {
+            interned.getChild("includes").addChild(new Xpp3Dom("include"));
+            fail("Expected the interned configuration to be immutable");
+        } catch (UnsupportedOperationException e) {
+            assertThat(interned, is(moduleConfiguration("core")));
+        }
+
+        Xpp3Dom copy = new Xpp3Dom(interned);
+        copy.getChild("includes").addChild(new Xpp3Dom("include"));
+        assertThat(copy.getChild("includes").getChildCount(), is(21));
+    }
+
+    @Test
+    public void concurrentlyInternedConfigurationsShareOneCanonicalTree() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Xpp3Dom>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(() -> {
+                    Xpp3Dom configuration = moduleConfiguration("concurrent");
+                    start.await();
+                    return internConfiguration(configuration);
+                }));
+            }
+            start.countDown();
+            Xpp3Dom canonical = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<Xpp3Dom> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS), sameInstance(canonical));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void copiesOfInternedConfigurationsAreEqualInBothDirectionsAndLeaveThemIntact() {
+        Xpp3Dom interned = internConfiguration(moduleConfiguration("core"));
+        Xpp3Dom first = new Xpp3Dom(interned);
+        Xpp3Dom second = new Xpp3Dom(interned);
+        assertThat(first, is(interned));
+        assertThat(interned, is(first));
+        assertThat(first.hashCode(), is(interned.hashCode()));
+
+        first.getChild("includes").addChild(new Xpp3Dom("include"));
+        first.getChild("artifactItem").setAttribute("implementation", "OtherItem");
+        first.getChild("finalName").setValue("web");
+
+        assertThat(first.getChild("includes").getChildCount(), is(21));
+        assertThat(second, is(moduleConfiguration("core")));
+        assertThat(interned, is(moduleConfiguration("core")));
+        assertThat(first, not(is(second)));
+        assertThat(second, not(is(first)));
+        assertThat(internConfiguration(first).getChild("systemPropertyVariables"),
+            sameInstance(interned.getChild("systemPropertyVariables")));
+    }
+
+    @Test
+    public void internInternsDeepConfigurationsWithoutRecursion() {
+        Xpp3Dom root = new Xpp3Dom("configuration");
+        Xpp3Dom parent = root;
+        for (int i = 0; i < 100000; i++) {
+            Xpp3Dom child = new Xpp3Dom("nested");
+            parent.addChild(child);
+            parent = child;
+        }
+        parent.setValue("bottom");
+
+        Xpp3Dom dom = internConfiguration(root);
+        int depth = 0;
+        while (dom.getChildCount() > 0) {
+            dom = dom.getChild(0);
+            depth++;
+        }
+        assertThat(depth, is(100000));
+        assertThat(dom.getValue(), is("bottom"));
+    }
+
+    /**
+     * Compares the objects held by the configurations of a reactor running the same wrapped goal in every module,
+     * built fresh for each module as before, and interned.
+     */
+    @Test
+    public void internedConfigurationsOfALargeReactorHoldFarFewerObjects() {
+        List<Xpp3Dom> fresh = new ArrayList<>();
+        List<Xpp3Dom> interned = new ArrayList<>();
+        for (int i = 0; i < MODULES; i++) {
+            fresh.add(moduleConfiguration("module-" + i));
+            interned.add(internConfiguration(moduleConfiguration("module-" + i)));
+        }
+
+        long freshFootprint = footprint(fresh);
+        long internedFootprint = footprint(interned);
+        assertThat(interned, is(fresh));
+        assertTrue("interned " + internedFootprint + " bytes, fresh " + freshFootprint + " bytes",
+            internedFootprint * 10 < freshFootprint);
+    }
+
+    /**
+     * @return a configuration like the one parsed from the POM of each module, with new strings as the parser creates
+     */
+    private static Xpp3Dom moduleConfiguration(String module) {
+        List<MojoExecutor.Element> includes = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            includes.add(element(copy("include"), copy("**/generated/package" + i + "/*.java")));
+        }
+        return configuration(
+            element(copy("outputDirectory"), copy("${project.build.directory}/generated-sources")),
+            element(copy("finalName"), copy(module)),
+            element(copy("includes"), includes.toArray(new MojoExecutor.Element[0])),
+            element(copy("systemPropertyVariables"),
+                element(copy("file.encoding"), copy("UTF-8")),
+                element(copy("java.awt.headless"), copy("true"))),
+            element(copy("artifactItem"), attribute(copy("implementation"), copy("ArtifactItem")),
+                element(copy("groupId"), copy("org.example")),
+                element(copy("artifactId"), copy("generator"))));
+    }
+
+    private static String copy(String value) {
+        return new String(value.toCharArray());
+    }
+
+    /**
+     * @return the approximate number of bytes of the distinct elements and strings reachable from the configurations,
+     *         as laid out by a 64-bit JVM with compressed references
+     */
+    private static long footprint(List<Xpp3Dom> configurations) {
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Xpp3Dom> pending = new ArrayDeque<>(configurations);
+        long bytes = 0;
+        while (!pending.isEmpty()) {
+            Xpp3Dom dom = pending.pop();
+            if (!seen.add(dom)) {
+                continue;
+            }
+            // the element, its child list with its array, and its map of children or attributes
+            bytes += 32 + 24 + 16 + 4L * dom.getChildCount() + 48 + 16 + 32L * dom.getChildCount();
+            bytes += stringFootprint(seen, dom.getName()) + stringFootprint(seen, dom.getValue());
+            for (String name : dom.getAttributeNames()) {
+                bytes += 32 + stringFootprint(seen, name) + stringFootprint(seen, dom.getAttribute(name));
+            }
+            Collections.addAll(pending, dom.getChildren());
+        }
+        return bytes;
+    }
+
+    private static long stringFootprint(Set<Object> seen, String value) {
+        return value != null && seen.add(value) ? 24 + 16 + value.length() : 0;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.artifactId;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.groupId;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.plugin;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.version;
+
+public class ExecutionMetricsTest {
+    @Test
+    public void histogramBucketsBoundTheRelativeError() {
+        for (long value : new long[] {0, 1, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE}) {
+            long highest = ExecutionMetrics.Histogram.highestValue(ExecutionMetrics.Histogram.bucket(value));
+            assertThat(value + " <= " + highest, highest >= value, is(true));
+            assertThat(value + " within 1/16 of " + highest, highest - value <= value / 16, is(true));
+        }
+    }
+
+    @Test
+    public void metricsReportPercentilesPerGoal() throws Exception {
+        ExecutionMetrics metrics = new ExecutionMetrics();
+        for (int i = 1; i <= 100; i++) {
+            metrics.record(result("compile", TimeUnit.MILLISECONDS.toNanos(i)), i == 100);
+        }
+        metrics.record(result("jar", TimeUnit.SECONDS.toNanos(1)), false);
+
+        ExecutionMetrics.Goal compile = metrics.getGoals().get(0);
+        assertThat(compile.getMojo(), is("org.apache.maven.plugins:maven-compiler-plugin:compile"));
+        assertThat(compile.getCount(), is(100L));
+        assertThat(compile.getFailures(), is(1L));
+        assertThat(compile.getMaxNanos(), is(TimeUnit.MILLISECONDS.toNanos(100)));
+        assertThat(Math.abs(compile.getPercentile(50, TimeUnit.MILLISECONDS) - 50) <= 3, is(true));
+        assertThat(Math.abs(compile.getPercentile(95, TimeUnit.MILLISECONDS) - 95) <= 6, is(true));
+        assertThat(compile.getPercentile(100, TimeUnit.MILLISECONDS), is(100L));
+
+        StringWriter json = new StringWriter();
+        metrics.writeJson(json);
+        assertThat(json.toString(), containsString("\"executions\": 101,\n  \"failures\": 1,"));
+        assertThat(json.toString(), containsString("{\"mojo\": \"org.apache.maven.plugins:maven-compiler-plugin:jar\", "
+            + "\"count\": 1, \"failures\": 0, \"totalMs\": 1000.000, \"p50Ms\": 1000.000, \"p95Ms\": 1000.000, "
+            + "\"p99Ms\": 1000.000, \"maxMs\": 1000.000}"));
+    }
+
+    private static MojoExecutionResult result(String goal, long nanos) {
+        return new MojoExecutionResult(
+            plugin(groupId("org.apache.maven.plugins"), artifactId("maven-compiler-plugin"), version("3.12.1")),
+            goal, null, nanos, new long[MojoExecutionResult.Phase.values().length],
+            MojoExecutionResult.Outcome.EXECUTED, null);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
+import org.apache.maven.plugin.descriptor.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.component.configurator.expression.ExpressionEvaluator;
+import org.codehaus.plexus.configuration.PlexusConfiguration;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.attribute;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.configuration;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.element;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.internConfiguration;
+
+public class ExpressionCacheTest {
+    private static final Supplier<ExpressionEvaluator> CACHED = () -> {
+        throw new AssertionError("Expected all expressions to be cached");
+    };
+
+    private final ExpressionCache cache = new ExpressionCache();
+    private final MojoDescriptor mojoDescriptor = new MojoDescriptor();
+    private final MavenProject project = mock(MavenProject.class);
+    private ExpressionEvaluator evaluator;
+
+    @Before
+    public void setUpEvaluator() throws Exception {
+        evaluator = mock(ExpressionEvaluator.class);
+        when(evaluator.evaluate("${project.build.directory}")).thenReturn("/work/target");
+        when(evaluator.evaluate("${skip}")).thenReturn(Boolean.FALSE);
+        when(evaluator.evaluate("${basedir}")).thenReturn(new File("/work"));
+        when(evaluator.evaluate("${project.artifacts}")).thenReturn(Collections.emptySet());
+    }
+
+    private static Xpp3Dom mergedConfiguration() {
+        return configuration(
+            element("outputDirectory", "${project.build.directory}/lib"),
+            element("skip", "${skip}"),
+            element("artifacts", "${project.artifacts}"),
+            element("encoding", "${project.build.sourceEncoding}"),
+            element("execution", "${mojoExecution}"),
+            element("escaped", "$${project.build.directory}"),
+            element("baseDirectory", attribute("default-value", "${basedir}"))
+        );
+    }
+
+    @Test
+    public void interpolateResolvesSupportedExpressionsAndLeavesTheRestForMaven() throws Exception {
+        Xpp3Dom merged = internConfiguration(mergedConfiguration());
+
+        Xpp3Dom interpolated = cache.interpolate(merged, mojoDescriptor, project, () -> evaluator);
+
+        assertThat(interpolated, is(configuration(
+            element("outputDirectory", "/work/target/lib"),
+            element("skip", "false"),
+            element("artifacts", "${project.artifacts}"),
+            element("encoding", "${project.build.sourceEncoding}"),
+            element("execution", "${mojoExecution}"),
+            element("escaped", "$${project.build.directory}"),
+            element("baseDirectory", attribute("default-value", new File("/work").getPath()))
+        )));
+        assertThat(merged, is(mergedConfiguration()));
+        verify(evaluator, never()).evaluate("${mojoExecution}");
+    }
+
+    @Test
+    public void expressionsAreEvaluatedOncePerProject() throws Exception {
+        Xpp3Dom first = cache.interpolate(mergedConfiguration(), mojoDescriptor, project, () -> evaluator);
+        Xpp3Dom second = cache.interpolate(mergedConfiguration(), mojoDescriptor, project, CACHED);
+        cache.interpolate(mergedConfiguration(), mojoDescriptor, mock(MavenProject.class), () -> evaluator);
+
+        assertThat(second, is(first));
+        verify(evaluator, times(2)).evaluate("${project.build.directory}");
+        verify(evaluator, times(2)).evaluate("${project.build.sourceEncoding}");
+        ExpressionCache.Expression directory = cache.getExpressions().stream()
+            .filter(expression -> expression.getExpression().equals("project.build.directory"))
+            .findFirst().get();
+        assertThat(directory.getEvaluations(), is(2L));
+        assertThat(directory.getHits(), is(1L));
+        assertThat(cache.toString(), containsString("${project.build.directory}"));
+    }
+
+    @Test
+    public void interpolateModifiesMutableConfigurationsInPlace() {
+        Xpp3Dom configuration = mergedConfiguration();
+        assertThat(cache.interpolate(configuration, mojoDescriptor, project, () -> evaluator), sameInstance(configuration));
+
+        Xpp3Dom literal = internConfiguration(configuration(element("outputDirectory", "target/lib")));
+        assertThat(cache.interpolate(literal, mojoDescriptor, project, CACHED), sameInstance(literal));
+    }
+
+    @Test
+    public void expressionsAreEvaluatedPerProjectInstance() throws Exception {
+        MavenProject original = project("1.0");
+        MavenProject fork = project("1.0");
+        cache.interpolate(mergedConfiguration(), mojoDescriptor, original, () -> evaluator);
+        when(evaluator.evaluate("${project.build.directory}")).thenReturn("/work/fork/target");
+
+        Xpp3Dom interpolated = cache.interpolate(mergedConfiguration(), mojoDescriptor, fork, () -> evaluator);
+        assertThat(fork, is(original));
+        assertThat(interpolated.getChild("outputDirectory").getValue(), is("/work/fork/target/lib"));
+    }
+
+    private static MavenProject project(String version) {
+        MavenProject project = new MavenProject();
+        project.setGroupId("org.example");
+        project.setArtifactId("module");
+        project.setVersion(version);
+        return project;
+    }
+
+    @Test
+    public void interpolateLeavesPlexusConfigurationParametersForTheMojo() throws Exception {
+        Parameter target = new Parameter();
+        target.setName("target");
+        target.setAlias("tasks");
+        target.setType(PlexusConfiguration.class.getName());
+        Parameter outputDirectory = new Parameter();
+        outputDirectory.setName("outputDirectory");
+        outputDirectory.setType(File.class.getName());
+        mojoDescriptor.addParameter(target);
+        mojoDescriptor.addParameter(outputDirectory);
+        Xpp3Dom configuration = configuration(
+            element("outputDirectory", "${project.build.directory}/lib"),
+            element("target", element("echo", "${basedir}"), element("mkdir", "${project.build.directory}")),
+            element("tasks", element("echo", "${skip}"))
+        );
+
+        Xpp3Dom interpolated = cache.interpolate(configuration, mojoDescriptor, project, () -> evaluator);
+        assertThat(interpolated, is(configuration(
+            element("outputDirectory", "/work/target/lib"),
+            element("target", element("echo", "${basedir}"), element("mkdir", "${project.build.directory}")),
+            element("tasks", element("echo", "${skip}"))
+        )));
+    }
+
+    @Test
+    public void invalidateReevaluatesTheExpressionsOfTheProject() throws Exception {
+        cache.interpolate(mergedConfiguration(), mojoDescriptor, project, () -> evaluator);
+        when(evaluator.evaluate("${project.build.directory}")).thenReturn("/work/build");
+        cache.invalidate(project);
+
+        Xpp3Dom interpolated = cache.interpolate(mergedConfiguration(), mojoDescriptor, project, () -> evaluator);
+        assertThat(interpolated.getChild("outputDirectory").getValue(), is("/work/build/lib"));
+        verify(evaluator, times(2)).evaluate("${skip}");
+    }
+}
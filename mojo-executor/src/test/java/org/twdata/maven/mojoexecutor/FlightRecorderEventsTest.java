@@ -0,0 +1,42 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import jdk.jfr.Recording;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class FlightRecorderEventsTest {
+    @Test
+    public void eventsAreOnlyCreatedWhileARecordingEnablesThem() {
+        assertThat(FlightRecorderEvents.beginExecution(), is(nullValue()));
+        assertThat(FlightRecorderEvents.beginDescriptorLoad(), is(nullValue()));
+
+        try (Recording recording = new Recording()) {
+            recording.enable(FlightRecorderEvents.MojoExecutionEvent.class);
+            recording.disable(FlightRecorderEvents.DescriptorLoadEvent.class);
+            recording.start();
+            assertThat(FlightRecorderEvents.beginExecution(),
+                instanceOf(FlightRecorderEvents.MojoExecutionEvent.class));
+            assertThat(FlightRecorderEvents.beginDescriptorLoad(), is(nullValue()));
+        }
+        assertThat(FlightRecorderEvents.beginExecution(), is(nullValue()));
+    }
+}
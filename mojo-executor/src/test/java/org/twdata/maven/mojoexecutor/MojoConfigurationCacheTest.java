@@ -0,0 +1,106 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.codehaus.plexus.configuration.xml.XmlPlexusConfiguration;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.Xpp3DomUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.configuration;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.element;
+
+public class MojoConfigurationCacheTest {
+    private MojoDescriptor mojoDescriptor;
+
+    @Before
+    public void setUpMojoDescriptor() {
+        PluginDescriptor pluginDescriptor = new PluginDescriptor();
+        pluginDescriptor.setGroupId("org.apache.maven.plugins");
+        pluginDescriptor.setArtifactId("maven-dependency-plugin");
+        pluginDescriptor.setVersion("2.0");
+        mojoDescriptor = new MojoDescriptor();
+        mojoDescriptor.setGoal("copy-dependencies");
+        mojoDescriptor.setPluginDescriptor(pluginDescriptor);
+        mojoDescriptor.setMojoConfiguration(defaults("${outputDirectory}"));
+    }
+
+    private static XmlPlexusConfiguration defaults(String outputDirectory) {
+        XmlPlexusConfiguration defaults = new XmlPlexusConfiguration("configuration");
+        defaults.addChild("outputDirectory", outputDirectory).setAttribute("default-value", "target/dependency");
+        defaults.addChild("stripVersion", "${mdep.stripVersion}").setAttribute("default-value", "false");
+        return defaults;
+    }
+
+    @Test
+    public void cachedMergesAreSharedAndEachExecutionGetsItsOwnCopy() {
+        Xpp3Dom configuration = configuration(element("stripVersion", "true"));
+        Xpp3Dom expected = Xpp3DomUtils.mergeXpp3Dom(new Xpp3Dom(configuration),
+            PlexusConfigurationUtils.toXpp3Dom(mojoDescriptor.getMojoConfiguration()));
+
+        Xpp3Dom first = MojoConfigurationCache.merge(mojoDescriptor, configuration);
+        assertThat(first, is(expected));
+        assertThat(expected, is(first));
+        first.getChild("stripVersion").setValue("modified");
+        first.addChild(new Xpp3Dom("added"));
+        Xpp3Dom second = MojoConfigurationCache.merge(mojoDescriptor, configuration(element("stripVersion", "true")));
+
+        assertThat(second, is(expected));
+        assertThat(expected, is(second));
+        assertThat(second, not(sameInstance(first)));
+        assertThat(first.getChild("stripVersion").getValue(), is("modified"));
+        assertThat(MojoConfigurationCache.mergeShared(mojoDescriptor, configuration), is(expected));
+        assertThat(MojoConfigurationCache.mergeShared(mojoDescriptor, configuration),
+            sameInstance(MojoConfigurationCache.mergeShared(mojoDescriptor, configuration)));
+        assertThat(configuration, is(configuration(element("stripVersion", "true"))));
+    }
+
+    @Test
+    public void configurationsConvertedForASingleExecutionAreMergedInPlace() {
+        Xpp3Dom configuration = configuration(element("stripVersion", "true"));
+        Xpp3Dom expected = MojoConfigurationCache.merge(mojoDescriptor, configuration);
+        Xpp3Dom converted = PlexusConfigurationUtils.asXpp3Dom(new XmlPlexusConfiguration(configuration));
+
+        Xpp3Dom merged = MojoConfigurationCache.merge(mojoDescriptor, converted);
+        assertThat(merged, sameInstance(converted));
+        assertThat(merged, is(expected));
+        assertThat(expected, is(merged));
+    }
+
+    @Test
+    public void mergesDistinguishConfigurationsAndDescriptorDefaults() {
+        Xpp3Dom stripped = MojoConfigurationCache.merge(mojoDescriptor,
+            configuration(element("stripVersion", "true")));
+        Xpp3Dom unstripped = MojoConfigurationCache.merge(mojoDescriptor,
+            configuration(element("stripVersion", "false")));
+        assertThat(stripped.getChild("stripVersion").getValue(), is("true"));
+        assertThat(unstripped.getChild("stripVersion").getValue(), is("false"));
+
+        mojoDescriptor.setMojoConfiguration(defaults("${project.build.directory}"));
+        Xpp3Dom redefined = MojoConfigurationCache.merge(mojoDescriptor,
+            configuration(element("stripVersion", "true")));
+        assertThat(redefined.getChild("outputDirectory").getValue(), is("${project.build.directory}"));
+        assertThat(redefined.getChild("undeclared"), nullValue());
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.codehaus.plexus.configuration.xml.XmlPlexusConfiguration;
+import org.eclipse.aether.RepositorySystemSession;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.twdata.maven.mojoexecutor.MojoExecutionBatch.Invocation;
+import org.twdata.maven.mojoexecutor.MojoExecutionBatch.Status;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.batch;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.configuration;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.executionEnvironment;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.goal;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.plugin;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MojoExecutionBatchTest {
+    @Mock MavenSession session;
+    @Mock RepositorySystemSession repositorySession;
+    @Mock BuildPluginManager pluginManager;
+
+    private final Plugin plugin = plugin("org.twdata.maven", "test-maven-plugin", "1.0");
+    private final List<String> executedGoals = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUpMocks() throws Exception {
+        PluginDescriptor pluginDescriptor = new PluginDescriptor();
+        for (String goal : new String[] {"a", "b", "c", "d", "e"}) {
+            MojoDescriptor mojoDescriptor = new MojoDescriptor();
+            mojoDescriptor.setGoal(goal);
+            mojoDescriptor.setConfiguration(new XmlPlexusConfiguration("configuration"));
+            mojoDescriptor.setPluginDescriptor(pluginDescriptor);
+            pluginDescriptor.addMojo(mojoDescriptor);
+        }
+
+        when(session.getRepositorySession()).thenReturn(repositorySession);
+        when(pluginManager.loadPlugin(any(Plugin.class), isNull(), same(repositorySession)))
+            .thenReturn(pluginDescriptor);
+        doAnswer(invocation -> {
+            executedGoals.add(invocation.<MojoExecution>getArgument(1).getGoal());
+            return null;
+        }).when(pluginManager).executeMojo(same(session), any(MojoExecution.class));
+    }
+
+    @Test
+    public void executeRunsInvocationsAfterTheirPrerequisites() throws Exception {
+        MojoExecutionBatch batch = batch(executionEnvironment(session, pluginManager));
+        Invocation a = batch.add(plugin, goal("a"), configuration());
+        Invocation b = batch.add(plugin, goal("b"), configuration()).runsAfter(a);
+        Invocation c = batch.add(plugin, goal("c"), configuration()).runsAfter(a);
+        Invocation d = batch.add(plugin, goal("d"), configuration()).runsAfter(b, c);
+
+        Map<Invocation, MojoExecutionResult> results = batch.execute();
+
+        assertThat(results.size(), is(4));
+        assertThat(executedGoals.get(0), is("a"));
+        assertThat(executedGoals.get(3), is("d"));
+        assertThat(d.getStatus(), is(Status.SUCCEEDED));
+        verify(pluginManager, times(1)).loadPlugin(any(Plugin.class), isNull(), same(repositorySession));
+    }
+
+    @Test
+    public void executeStartsTheLongestChainFirst() throws Exception {
+        MojoExecutionBatch batch = batch(executionEnvironment(session, pluginManager));
+        batch.add(plugin, goal("a"), configuration());
+        Invocation b = batch.add(plugin, goal("b"), configuration());
+        batch.add(plugin, goal("c"), configuration()).runsAfter(b);
+
+        batch.execute(new ForkJoinPool(1));
+
+        assertThat(executedGoals, is(Arrays.asList("b", "a", "c")));
+    }
+
+    @Test
+    public void executeRunsInvocationsWithTheContextOfTheCallingThread() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        ClassLoader callerClassLoader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+        ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+        List<Object> seen = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            seen.add(Thread.currentThread().getContextClassLoader());
+            seen.add(ThreadOutput.isSuppressed());
+            return null;
+        }).when(pluginManager).executeMojo(same(session), any(MojoExecution.class));
+        try {
+            // start the workers from a suppressed thread, so that they inherit its scope, which stays open
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch finished = new CountDownLatch(1);
+            Thread starter = new Thread(() -> {
+                try (ThreadOutput.Scope ignored = ThreadOutput.suppress()) {
+                    pool.invokeAll(Arrays.asList(() -> null, () -> null));
+                    started.countDown();
+                    finished.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            starter.start();
+            started.await();
+
+            MojoExecutionBatch batch = batch(executionEnvironment(session, pluginManager));
+            batch.add(plugin, goal("a"), configuration());
+            Thread.currentThread().setContextClassLoader(callerClassLoader);
+            try {
+                batch.execute(pool);
+            } finally {
+                Thread.currentThread().setContextClassLoader(originalClassLoader);
+            }
+            assertThat(seen, is(Arrays.<Object>asList(callerClassLoader, false)));
+
+            seen.clear();
+            MojoExecutionBatch quiet = batch(executionEnvironment(session, pluginManager));
+            quiet.add(plugin, goal("b"), configuration());
+            try (ThreadOutput.Scope ignored = ThreadOutput.suppress()) {
+                quiet.execute(pool);
+            }
+            assertThat(seen, is(Arrays.<Object>asList(originalClassLoader, true)));
+            finished.countDown();
+            starter.join();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void executeCancelsDependentsOfFailedInvocations() throws Exception {
+        MojoExecutionBatch batch = batch(executionEnvironment(session, pluginManager));
+        Invocation missing = batch.add(plugin, goal("missing"), configuration());
+        Invocation b = batch.add(plugin, goal("b"), configuration()).runsAfter(missing);
+        Invocation c = batch.add(plugin, goal("c"), configuration()).runsAfter(b);
+        Invocation d = batch.add(plugin, goal("d"), configuration());
+
+        try {
+            batch.execute();
+            fail("Expected the batch to fail");
+        } catch (MojoExecutionException e) {
+            assertThat(e.getCause() instanceof MojoExecutionException, is(true));
+        }
+
+        assertThat(missing.getStatus(), is(Status.FAILED));
+        assertThat(b.getStatus(), is(Status.CANCELLED));
+        assertThat(c.getStatus(), is(Status.CANCELLED));
+        assertThat(d.getStatus(), is(Status.SUCCEEDED));
+        assertThat(executedGoals, is(Collections.singletonList("d")));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void executeRejectsCycles() throws Exception {
+        MojoExecutionBatch batch = batch(executionEnvironment(session, pluginManager));
+        Invocation a = batch.add(plugin, goal("a"), configuration());
+        Invocation b = batch.add(plugin, goal("b"), configuration()).runsAfter(a);
+        a.runsAfter(b);
+
+        batch.execute();
+    }
+}
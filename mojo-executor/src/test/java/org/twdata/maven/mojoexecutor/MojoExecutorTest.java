@@ -16,13 +16,18 @@
 package org.twdata.maven.mojoexecutor;
 
 import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
 import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginManagement;
 import org.apache.maven.plugin.BuildPluginManager;
 import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.descriptor.MojoDescriptor;
 import org.apache.maven.plugin.descriptor.PluginDescriptor;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.configuration.xml.XmlPlexusConfiguration;
+import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.eclipse.aether.RepositorySystemSession;
 import org.hamcrest.CoreMatchers;
@@ -30,21 +35,50 @@ import org.hamcrest.Description;
 import org.hamcrest.Matcher;
 import org.hamcrest.TypeSafeDiagnosingMatcher;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.AdditionalMatchers;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.twdata.maven.mojoexecutor.MojoExecutor.ExecutionEnvironment;
 
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.hamcrest.MockitoHamcrest.argThat;
@@ -56,11 +90,14 @@ import static org.twdata.maven.mojoexecutor.MojoExecutor.dependencies;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.dependency;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.element;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.executeMojo;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.executeMojoAsync;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.executionEnvironment;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.goal;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.groupId;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.name;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.plugin;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.prepare;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.upToDateCheck;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.version;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -70,6 +107,9 @@ public class MojoExecutorTest {
     @Mock RepositorySystemSession repositorySession;
     @Mock BuildPluginManager pluginManager;
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private MojoDescriptor copyDependenciesMojoDescriptor;
 
     @Before
@@ -299,6 +339,560 @@ public class MojoExecutorTest {
                 );
     }
 
+    @Test
+    public void executeMojoTwiceInSameSessionLoadsPluginDescriptorOnce() throws Exception {
+        Plugin plugin = plugin(
+                groupId("org.apache.maven.plugins"),
+                artifactId("maven-dependency-plugin"),
+                version("2.0"),
+                dependencies(
+                        dependency("org.apache.maven.plugins", "some-plugin", "1.0")
+                )
+        );
+        for (int i = 0; i < 2; i++) {
+            executeMojo(
+                    plugin,
+                    goal("copy-dependencies"),
+                    configuration(
+                            element(name("outputDirectory"), "${project.build.directory}/foo")
+                    ),
+                    executionEnvironment(
+                            project,
+                            session,
+                            pluginManager
+                    )
+            );
+        }
+        verify(pluginManager, times(1)).loadPlugin(same(plugin), isNull(), same(repositorySession));
+        verify(pluginManager, times(2)).executeMojo(same(session), any(MojoExecution.class));
+
+        PluginDescriptorCache cache = PluginDescriptorCache.forSession(session);
+        assertThat(cache.getMisses(), is(1L));
+        assertThat(cache.getHits(), is(1L));
+    }
+
+    @Test
+    public void executeMojoRecordsMetricsOnlyOnceEnabledForTheSession() throws Exception {
+        Plugin plugin = plugin(
+                groupId("org.apache.maven.plugins"),
+                artifactId("maven-dependency-plugin"),
+                version("2.0"),
+                dependencies(
+                        dependency("org.apache.maven.plugins", "some-plugin", "1.0")
+                )
+        );
+        ExecutionEnvironment before = executionEnvironment(project, session, pluginManager);
+        executeMojo(plugin, goal("copy-dependencies"), configuration(), before);
+        assertThat(ExecutionMetrics.close(session), is(nullValue()));
+
+        ExecutionMetrics metrics = ExecutionMetrics.forSession(session);
+        try {
+            ExecutionEnvironment after = executionEnvironment(project, session, pluginManager);
+            assertThat(after.getExecutionMetrics(), sameInstance(metrics));
+            executeMojo(plugin, goal("copy-dependencies"), configuration(), after);
+            executeMojo(plugin, goal("copy-dependencies"), configuration(), before);
+            assertThat(metrics.getGoals().get(0).getCount(), is(1L));
+
+            executeMojo(plugin, goal("copy-dependencies"), configuration(), before.recordMetrics(metrics));
+            assertThat(metrics.getGoals().get(0).getCount(), is(2L));
+        } finally {
+            ExecutionMetrics.close(session);
+        }
+    }
+
+    @Test
+    public void executeMojoAsyncCompletesWithExecutionResult() throws Exception {
+        Plugin plugin = plugin(
+                groupId("org.apache.maven.plugins"),
+                artifactId("maven-dependency-plugin"),
+                version("2.0"),
+                dependencies(
+                        dependency("org.apache.maven.plugins", "some-plugin", "1.0")
+                )
+        );
+        MojoExecutionResult result = executeMojoAsync(
+                plugin,
+                goal("copy-dependencies#execution"),
+                configuration(
+                        element(name("outputDirectory"), "${project.build.directory}/foo")
+                ),
+                executionEnvironment(
+                        project,
+                        session,
+                        pluginManager
+                )
+        ).get(10, TimeUnit.SECONDS);
+
+        MojoExecution mojoExecution = new MojoExecution(copyDependenciesMojoDescriptor, "execution");
+        mojoExecution.setConfiguration(configuration(
+                element(name("outputDirectory"), "${project.build.directory}/foo")
+        ));
+        verify(pluginManager)
+                .executeMojo(
+                        same(session),
+                        argThat(is(equalTo(mojoExecution)))
+                );
+        assertThat(result.getPlugin(), is(equalTo(plugin)));
+        assertThat(result.getGoal(), is("copy-dependencies"));
+        assertThat(result.getExecutionId(), is("execution"));
+    }
+
+    @Test
+    public void executeMojoAsyncRunsWithTheContextOfTheCallingThread() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ClassLoader callerClassLoader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+        ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            // start the pooled thread before the caller sets up its context, so that it cannot inherit it
+            ClassLoader poolClassLoader = executor.submit(() -> Thread.currentThread().getContextClassLoader())
+                .get(10, TimeUnit.SECONDS);
+            List<Object> seen = new ArrayList<>();
+            doAnswer(invocation -> {
+                seen.add(Thread.currentThread().getContextClassLoader());
+                seen.add(ThreadOutput.isSuppressed());
+                return null;
+            }).when(pluginManager).executeMojo(same(session), any(MojoExecution.class));
+
+            Thread.currentThread().setContextClassLoader(callerClassLoader);
+            try (ThreadOutput.Scope ignored = ThreadOutput.suppress()) {
+                executeMojoAsync(
+                        plugin(
+                                groupId("org.apache.maven.plugins"),
+                                artifactId("maven-dependency-plugin"),
+                                version("2.0"),
+                                dependencies(
+                                        dependency("org.apache.maven.plugins", "some-plugin", "1.0")
+                                )
+                        ),
+                        goal("copy-dependencies"),
+                        configuration(),
+                        executionEnvironment(project, session, pluginManager),
+                        executor
+                ).get(10, TimeUnit.SECONDS);
+            } finally {
+                Thread.currentThread().setContextClassLoader(originalClassLoader);
+            }
+
+            assertThat(seen.get(0), sameInstance(callerClassLoader));
+            assertThat(seen.get(1), is(true));
+            assertThat(executor.submit(() -> Thread.currentThread().getContextClassLoader())
+                .get(10, TimeUnit.SECONDS), sameInstance(poolClassLoader));
+            assertThat(executor.submit(ThreadOutput::isSuppressed).get(10, TimeUnit.SECONDS), is(false));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void executeMojoAsyncCompletesExceptionallyWhenGoalIsMissing() throws Exception {
+        CompletableFuture<MojoExecutionResult> result = executeMojoAsync(
+                plugin(
+                        groupId("org.apache.maven.plugins"),
+                        artifactId("maven-dependency-plugin"),
+                        version("2.0"),
+                        dependencies(
+                                dependency("org.apache.maven.plugins", "some-plugin", "1.0")
+                        )
+                ),
+                goal("no-such-goal"),
+                configuration(),
+                executionEnvironment(
+                        project,
+                        session,
+                        pluginManager
+                ),
+                Runnable::run
+        );
+        try {
+            result.get();
+            fail("Expected the execution to fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(instanceOf(MojoExecutionException.class)));
+        }
+    }
+
+    @Test
+    public void executeMojoAsyncCompletesExceptionallyWhenTheExecutorRejectsIt() throws Exception {
+        CompletableFuture<MojoExecutionResult> result = executeMojoAsync(
+                plugin(
+                        groupId("org.apache.maven.plugins"),
+                        artifactId("maven-dependency-plugin"),
+                        version("2.0")
+                ),
+                goal("copy-dependencies"),
+                configuration(),
+                executionEnvironment(
+                        project,
+                        session,
+                        pluginManager
+                ),
+                task -> {
+                    throw new RejectedExecutionException("saturated");
+                }
+        );
+        try {
+            result.get();
+            fail("Expected the execution to be rejected");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(instanceOf(RejectedExecutionException.class)));
+        }
+        verify(pluginManager, never()).executeMojo(any(MavenSession.class), any(MojoExecution.class));
+    }
+
+    @Test
+    public void executeMojoNotifiesListenersWithPhaseTimings() throws Exception {
+        MojoExecutorListener listener = mock(MojoExecutorListener.class);
+        doAnswer(invocation -> {
+            Thread.sleep(5);
+            return null;
+        }).when(pluginManager).executeMojo(same(session), any(MojoExecution.class));
+        Plugin plugin = plugin(
+                groupId("org.apache.maven.plugins"),
+                artifactId("maven-dependency-plugin"),
+                version("2.0"),
+                dependencies(
+                        dependency("org.apache.maven.plugins", "some-plugin", "1.0")
+                )
+        );
+
+        executeMojo(
+                plugin,
+                goal("copy-dependencies#execution"),
+                configuration(),
+                executionEnvironment(
+                        project,
+                        session,
+                        pluginManager
+                ).addListener(listener)
+        );
+
+        ArgumentCaptor<MojoExecutionResult> result = ArgumentCaptor.forClass(MojoExecutionResult.class);
+        verify(listener).beforeMojoExecution(same(plugin), eq("copy-dependencies"), eq("execution"));
+        verify(listener).afterMojoExecution(result.capture());
+        verify(listener, never()).mojoExecutionFailed(any(MojoExecutionResult.class), any(Exception.class));
+        long phases = 0;
+        for (MojoExecutionResult.Phase phase : MojoExecutionResult.Phase.values()) {
+            phases += result.getValue().getDurationNanos(phase);
+        }
+        assertThat(result.getValue().getDuration(MojoExecutionResult.Phase.EXECUTION, TimeUnit.MILLISECONDS) >= 5,
+                is(true));
+        assertThat(result.getValue().getDurationNanos() >= phases, is(true));
+    }
+
+    @Test
+    public void executeMojoNotifiesListenersAboutFailures() throws Exception {
+        MojoExecutorListener listener = mock(MojoExecutorListener.class);
+        try {
+            executeMojo(
+                    plugin(
+                            groupId("org.apache.maven.plugins"),
+                            artifactId("maven-dependency-plugin"),
+                            version("2.0"),
+                            dependencies(
+                                    dependency("org.apache.maven.plugins", "some-plugin", "1.0")
+                            )
+                    ),
+                    goal("no-such-goal"),
+                    configuration(),
+                    executionEnvironment(
+                            project,
+                            session,
+                            pluginManager
+                    ).addListener(listener)
+            );
+            fail("Expected the execution to fail");
+        } catch (MojoExecutionException e) {
+            ArgumentCaptor<MojoExecutionResult> result = ArgumentCaptor.forClass(MojoExecutionResult.class);
+            verify(listener).mojoExecutionFailed(result.capture(), same(e));
+            verify(listener, never()).afterMojoExecution(any(MojoExecutionResult.class));
+            assertThat(result.getValue().getGoal(), is("no-such-goal"));
+            assertThat(result.getValue().getDurationNanos(MojoExecutionResult.Phase.EXECUTION), is(0L));
+        }
+    }
+
+    @Test
+    public void executeMojoWithResourceAccountingReportsExceededBudgets() throws Exception {
+        MojoExecutorListener listener = mock(MojoExecutorListener.class);
+        List<byte[]> allocated = new ArrayList<>();
+        doAnswer(invocation -> allocated.add(new byte[1024 * 1024]))
+                .when(pluginManager).executeMojo(same(session), any(MojoExecution.class));
+        ResourceAccounting accounting = new ResourceAccounting();
+
+        executeMojo(
+                plugin(
+                        groupId("org.apache.maven.plugins"),
+                        artifactId("maven-dependency-plugin"),
+                        version("2.0")
+                ),
+                goal("copy-dependencies"),
+                configuration(),
+                executionEnvironment(
+                        project,
+                        session,
+                        pluginManager
+                ).addListener(listener).accountResources(accounting.withAllocationBudget(1))
+        );
+
+        ArgumentCaptor<MojoExecutionResult> result = ArgumentCaptor.forClass(MojoExecutionResult.class);
+        verify(listener).afterMojoExecution(result.capture());
+        ResourceUsage usage = result.getValue().getResourceUsage();
+        assertThat(usage, notNullValue());
+        assertThat(usage.getGcCount() >= 0, is(true));
+        assertThat(accounting.getTotals().size(), is(1));
+        assertThat(accounting.getTotals().get(0).getMojo(),
+                is("org.apache.maven.plugins:maven-dependency-plugin:copy-dependencies"));
+        assertThat(accounting.getTotals().get(0).getExecutions(), is(1L));
+        if (usage.getAllocatedBytes() >= 0) {
+            assertThat(usage.getAllocatedBytes() >= 1024 * 1024, is(true));
+            verify(listener).resourceBudgetExceeded(same(result.getValue()), any(ResourceAccounting.class));
+        }
+    }
+
+    @Test
+    public void resourceUsageShowsSizesUnderOneMegabyteInKilobytesOrBytes() {
+        assertThat(ResourceUsage.formatBytes(3L * 1024 * 1024), is("3 MB"));
+        assertThat(ResourceUsage.formatBytes(512L * 1024), is("512 KB"));
+        assertThat(ResourceUsage.formatBytes(1), is("1 bytes"));
+        assertThat(new ResourceUsage(0, 2048, 0, 0).toString(), containsString("2 KB"));
+    }
+
+    @Test
+    public void executeMojoWithUpToDateCheckSkipsUnchangedExecutions() throws Exception {
+        File input = temporaryFolder.newFile("input.txt");
+        File output = temporaryFolder.newFolder("output");
+        Files.write(input.toPath(), "first".getBytes(StandardCharsets.UTF_8));
+        UpToDateCheck check = upToDateCheck(new File(temporaryFolder.getRoot(), "state"))
+                .inputs(input)
+                .outputs(output);
+        Plugin plugin = plugin(
+                groupId("org.apache.maven.plugins"),
+                artifactId("maven-dependency-plugin"),
+                version("2.0"),
+                dependencies(
+                        dependency("org.apache.maven.plugins", "some-plugin", "1.0")
+                )
+        );
+        ExecutionEnvironment env = executionEnvironment(project, session, pluginManager);
+
+        MojoExecutionResult first = executeMojo(plugin, goal("copy-dependencies"),
+                configuration(element(name("outputDirectory"), "foo")), env, check);
+        MojoExecutionResult unchanged = executeMojo(plugin, goal("copy-dependencies"),
+                configuration(element(name("outputDirectory"), "foo")), env, check);
+        MojoExecutionResult reconfigured = executeMojo(plugin, goal("copy-dependencies"),
+                configuration(element(name("outputDirectory"), "bar")), env, check);
+        Files.write(input.toPath(), "second".getBytes(StandardCharsets.UTF_8));
+        MojoExecutionResult changedInput = executeMojo(plugin, goal("copy-dependencies"),
+                configuration(element(name("outputDirectory"), "bar")), env, check);
+        assertThat(output.delete(), is(true));
+        MojoExecutionResult missingOutput = executeMojo(plugin, goal("copy-dependencies"),
+                configuration(element(name("outputDirectory"), "bar")), env, check);
+
+        assertThat(first.getOutcome(), is(MojoExecutionResult.Outcome.EXECUTED));
+        assertThat(unchanged.getOutcome(), is(MojoExecutionResult.Outcome.UP_TO_DATE));
+        assertThat(reconfigured.getOutcome(), is(MojoExecutionResult.Outcome.EXECUTED));
+        assertThat(changedInput.getOutcome(), is(MojoExecutionResult.Outcome.EXECUTED));
+        assertThat(missingOutput.getOutcome(), is(MojoExecutionResult.Outcome.EXECUTED));
+        verify(pluginManager, times(4)).executeMojo(same(session), any(MojoExecution.class));
+    }
+
+    @Test
+    public void executeMojoWithOutputCacheRestoresOutputsAfterClean() throws Exception {
+        File output = new File(temporaryFolder.getRoot(), "target/generated");
+        doAnswer(invocation -> {
+            assertThat(output.mkdirs(), is(true));
+            Files.write(new File(output, "Generated.java").toPath(), "class Generated {}".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(pluginManager).executeMojo(same(session), any(MojoExecution.class));
+        OutputCache cache = new OutputCache(temporaryFolder.newFolder("cache"));
+        Plugin plugin = plugin(
+                groupId("org.apache.maven.plugins"),
+                artifactId("maven-dependency-plugin"),
+                version("2.0"),
+                dependencies(
+                        dependency("org.apache.maven.plugins", "some-plugin", "1.0")
+                )
+        );
+        ExecutionEnvironment env = executionEnvironment(project, session, pluginManager);
+
+        MojoExecutionResult first = executeMojo(plugin, goal("copy-dependencies"), configuration(), env,
+                upToDateCheck(new File(temporaryFolder.getRoot(), "target/state")).outputs(output).cache(cache));
+        FileUtils.deleteDirectory(new File(temporaryFolder.getRoot(), "target"));
+        MojoExecutionResult second = executeMojo(plugin, goal("copy-dependencies"), configuration(), env,
+                upToDateCheck(new File(temporaryFolder.getRoot(), "target/state")).outputs(output).cache(cache));
+
+        assertThat(first.getOutcome(), is(MojoExecutionResult.Outcome.EXECUTED));
+        assertThat(second.getOutcome(), is(MojoExecutionResult.Outcome.RESTORED));
+        assertThat(new String(Files.readAllBytes(new File(output, "Generated.java").toPath()), StandardCharsets.UTF_8),
+                is("class Generated {}"));
+        assertThat(cache.getMisses(), is(1L));
+        assertThat(cache.getHits(), is(1L));
+        assertThat(cache.getBytesRestored(), is(18L));
+        verify(pluginManager, times(1)).executeMojo(same(session), any(MojoExecution.class));
+    }
+
+    @Test
+    public void executeMojoWithUnusableOutputCacheStillExecutes() throws Exception {
+        File output = new File(temporaryFolder.getRoot(), "target/generated");
+        doAnswer(invocation -> {
+            assertThat(output.mkdirs(), is(true));
+            return null;
+        }).when(pluginManager).executeMojo(same(session), any(MojoExecution.class));
+        // a file where the cache expects its directory, like a cache that cannot be written
+        OutputCache cache = new OutputCache(temporaryFolder.newFile("cache"));
+        Plugin plugin = plugin(
+                groupId("org.apache.maven.plugins"),
+                artifactId("maven-dependency-plugin"),
+                version("2.0"),
+                dependencies(
+                        dependency("org.apache.maven.plugins", "some-plugin", "1.0")
+                )
+        );
+        ExecutionEnvironment env = executionEnvironment(project, session, pluginManager);
+
+        MojoExecutionResult first = executeMojo(plugin, goal("copy-dependencies"), configuration(), env,
+                upToDateCheck(new File(temporaryFolder.getRoot(), "target/state")).outputs(output).cache(cache));
+        MojoExecutionResult second = executeMojo(plugin, goal("copy-dependencies"), configuration(), env,
+                upToDateCheck(new File(temporaryFolder.getRoot(), "target/state")).outputs(output).cache(cache));
+
+        assertThat(first.getOutcome(), is(MojoExecutionResult.Outcome.EXECUTED));
+        assertThat(second.getOutcome(), is(MojoExecutionResult.Outcome.UP_TO_DATE));
+        verify(pluginManager, times(1)).executeMojo(same(session), any(MojoExecution.class));
+    }
+
+    @Test
+    public void preparedMojoExecutesRepeatedlyWithOverrides() throws Exception {
+        Plugin plugin = plugin(
+                groupId("org.apache.maven.plugins"),
+                artifactId("maven-dependency-plugin"),
+                version("2.0"),
+                dependencies(
+                        dependency("org.apache.maven.plugins", "some-plugin", "1.0")
+                )
+        );
+        Xpp3Dom configuration = configuration(
+                element(name("outputDirectory"), "${project.build.directory}/foo"),
+                element(name("overWriteReleases"), "false")
+        );
+        PreparedMojo prepared = prepare(
+                plugin,
+                goal("copy-dependencies#execution"),
+                configuration,
+                executionEnvironment(
+                        project,
+                        session,
+                        pluginManager
+                )
+        );
+        configuration.getChild("outputDirectory").setValue("modified after prepare");
+
+        prepared.execute();
+        MojoExecutionResult result = prepared.execute(element(name("outputDirectory"), "${project.build.directory}/bar"));
+
+        MojoExecution defaultExecution = new MojoExecution(copyDependenciesMojoDescriptor, "execution");
+        defaultExecution.setConfiguration(configuration(
+                element(name("outputDirectory"), "${project.build.directory}/foo"),
+                element(name("overWriteReleases"), "false")
+        ));
+        MojoExecution overriddenExecution = new MojoExecution(copyDependenciesMojoDescriptor, "execution");
+        overriddenExecution.setConfiguration(configuration(
+                element(name("overWriteReleases"), "false"),
+                element(name("outputDirectory"), "${project.build.directory}/bar")
+        ));
+        verify(pluginManager).executeMojo(same(session), argThat(is(equalTo(defaultExecution))));
+        verify(pluginManager).executeMojo(same(session), argThat(is(equalTo(overriddenExecution))));
+        verify(pluginManager, times(1)).loadPlugin(any(Plugin.class), isNull(), same(repositorySession));
+        assertThat(result.getGoal(), is("copy-dependencies"));
+        assertThat(result.getExecutionId(), is("execution"));
+    }
+
+    @Test
+    public void resolvePluginVersionPrefersBuildPluginsOverPluginManagement() {
+        Build build = new Build();
+        build.setPluginManagement(new PluginManagement());
+        build.getPluginManagement().addPlugin(plugin("org.apache.maven.plugins", "maven-dependency-plugin", "2.0"));
+        build.getPluginManagement().addPlugin(plugin("org.apache.maven.plugins", "maven-jar-plugin", "3.0"));
+        build.addPlugin(plugin("org.apache.maven.plugins", "maven-dependency-plugin", "3.6.1"));
+        Model model = new Model();
+        model.setBuild(build);
+        MavenProject currentProject = new MavenProject(model);
+
+        Plugin dependencyPlugin = MojoExecutor.resolvePluginVersion(
+                plugin("org.apache.maven.plugins", "maven-dependency-plugin"), currentProject);
+        Plugin jarPlugin = MojoExecutor.resolvePluginVersion(
+                plugin("org.apache.maven.plugins", "maven-jar-plugin"), currentProject);
+
+        assertThat(dependencyPlugin.getVersion(), is("3.6.1"));
+        assertThat(jarPlugin.getVersion(), is("3.0"));
+    }
+
+    @Test
+    public void resolvePluginVersionSeesPluginsAddedAfterTheFirstLookup() {
+        Model model = new Model();
+        model.setBuild(new Build());
+        model.getBuild().setPluginManagement(new PluginManagement());
+        MavenProject currentProject = new MavenProject(model);
+
+        Plugin jarPlugin = plugin("org.apache.maven.plugins", "maven-jar-plugin");
+        Plugin before = MojoExecutor.resolvePluginVersion(jarPlugin, currentProject);
+        model.getBuild().getPluginManagement().addPlugin(plugin("org.apache.maven.plugins", "maven-jar-plugin", "3.0"));
+        Plugin after = MojoExecutor.resolvePluginVersion(jarPlugin, currentProject);
+
+        assertThat(before.getVersion(), is(CoreMatchers.nullValue()));
+        assertThat(after.getVersion(), is("3.0"));
+        assertThat(jarPlugin.getVersion(), is(CoreMatchers.nullValue()));
+    }
+
+    @Test
+    public void concurrentExecutionsSharingPluginAndConfigurationDoNotInterfere() throws Exception {
+        BuildPluginManager sharedPluginManager = mock(BuildPluginManager.class);
+        when(sharedPluginManager.loadPlugin(any(Plugin.class), isNull(), any(RepositorySystemSession.class)))
+                .thenReturn(copyDependenciesMojoDescriptor.getPluginDescriptor());
+        ExecutionEnvironment[] envs = {
+                managedVersionEnvironment("2.0", sharedPluginManager),
+                managedVersionEnvironment("3.0", sharedPluginManager)
+        };
+        Plugin sharedPlugin = plugin("org.apache.maven.plugins", "maven-dependency-plugin");
+        Xpp3Dom sharedConfiguration = configuration(element(name("outputDirectory"), "${project.build.directory}/foo"));
+
+        int executions = 2000;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<MojoExecutionResult>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < executions; i++) {
+                ExecutionEnvironment env = envs[i % 2];
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return MojoExecutor.execute(sharedPlugin, goal("copy-dependencies"), sharedConfiguration, env);
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < executions; i++) {
+                assertThat(results.get(i).get(30, TimeUnit.SECONDS).getPlugin().getVersion(),
+                        is(i % 2 == 0 ? "2.0" : "3.0"));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(sharedPlugin.getVersion(), is(CoreMatchers.nullValue()));
+        assertThat(sharedConfiguration.getChildCount(), is(1));
+        verify(sharedPluginManager, times(executions)).executeMojo(any(MavenSession.class), any(MojoExecution.class));
+    }
+
+    private static ExecutionEnvironment managedVersionEnvironment(String version, BuildPluginManager pluginManager) {
+        Model model = new Model();
+        model.setBuild(new Build());
+        model.getBuild().setPluginManagement(new PluginManagement());
+        model.getBuild().getPluginManagement().addPlugin(
+                plugin("org.apache.maven.plugins", "maven-dependency-plugin", version));
+        MavenProject currentProject = new MavenProject(model);
+        MavenSession session = mock(MavenSession.class);
+        when(session.getCurrentProject()).thenReturn(currentProject);
+        when(session.getRepositorySession()).thenReturn(mock(RepositorySystemSession.class));
+        return executionEnvironment(currentProject, session, pluginManager);
+    }
+
     private static Matcher<MojoExecution> equalTo(MojoExecution mojoExecution) {
         return new MojoExecutionIsEqual(mojoExecution);
     }
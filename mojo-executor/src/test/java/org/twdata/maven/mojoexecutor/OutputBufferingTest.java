@@ -0,0 +1,82 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class OutputBufferingTest {
+    private final ByteArrayOutputStream console = new ByteArrayOutputStream();
+    private PrintStream systemOut;
+
+    @Before
+    public void replaceSystemOut() {
+        systemOut = System.out;
+        System.setOut(new PrintStream(console, true));
+    }
+
+    @After
+    public void restoreSystemOut() {
+        System.setOut(systemOut);
+    }
+
+    @Test
+    public void bufferSpillsToFileAndDiscardsOutputBeyondItsSize() throws Exception {
+        OutputBuffering.Buffer buffer = new OutputBuffering.Buffer(4, 10);
+        buffer.write("0123456789abc".getBytes(StandardCharsets.UTF_8));
+        try {
+            buffer.writeTo(System.out);
+        } finally {
+            buffer.release();
+        }
+
+        assertThat(buffer.size(), is(10L));
+        assertThat(buffer.discarded(), is(3L));
+        assertThat(console.toString().trim(), is("0123456789[3 more bytes of output were discarded]"));
+    }
+
+    @Test
+    public void captureWritesOutputWhenClosed() {
+        OutputBuffering.Capture capture = new OutputBuffering().start();
+        System.out.println("buffered");
+        assertThat(console.size(), is(0));
+
+        capture.close(false);
+
+        assertThat(console.toString().trim(), is("buffered"));
+    }
+
+    @Test
+    public void captureDiscardsOutputOfSuccessfulExecutionsOnlyOnFailure() {
+        OutputBuffering buffering = new OutputBuffering().onlyOnFailure(true);
+        OutputBuffering.Capture succeeded = buffering.start();
+        System.out.println("succeeded");
+        succeeded.close(false);
+        OutputBuffering.Capture failed = buffering.start();
+        System.out.println("failed");
+        failed.close(true);
+
+        assertThat(console.toString().trim(), is("failed"));
+    }
+}
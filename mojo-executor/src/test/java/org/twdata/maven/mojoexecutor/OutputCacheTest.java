@@ -0,0 +1,126 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class OutputCacheTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void storeEvictsLeastRecentlyUsedEntries() throws Exception {
+        OutputCache cache = new OutputCache(temporaryFolder.newFolder("cache")).maxSize(10);
+        File output = temporaryFolder.newFile("output.txt");
+
+        Files.write(output.toPath(), new byte[6]);
+        cache.store("old", outputs(output));
+        Files.setLastModifiedTime(new File(cache.getDirectory(), "entries/old").toPath(), FileTime.fromMillis(0));
+        Files.write(output.toPath(), new byte[8]);
+        cache.store("new", outputs(output));
+
+        assertThat(cache.getEvictions(), is(1L));
+        assertThat(cache.getBytesStored(), is(14L));
+        assertThat(cache.restore("old", outputs(output)), is(false));
+        assertThat(cache.restore("new", outputs(output)), is(true));
+        assertThat(Files.size(output.toPath()), is(8L));
+    }
+
+    @Test
+    public void contentsSharedByEntriesCountOnceTowardsTheMaximumSize() throws Exception {
+        OutputCache cache = new OutputCache(temporaryFolder.newFolder("cache")).maxSize(10);
+        File output = temporaryFolder.newFile("output.txt");
+        Files.write(output.toPath(), new byte[6]);
+
+        cache.store("first", outputs(output));
+        cache.store("second", outputs(output));
+
+        assertThat(cache.getEvictions(), is(0L));
+        assertThat(cache.restore("first", outputs(output)), is(true));
+        assertThat(cache.restore("second", outputs(output)), is(true));
+    }
+
+    @Test
+    public void hardLinkedRestoresShareTheStoredContent() throws Exception {
+        OutputCache cache = new OutputCache(temporaryFolder.newFolder("cache")).hardLinks(true);
+        File output = temporaryFolder.newFile("output.txt");
+        Files.write(output.toPath(), new byte[] {1, 2, 3});
+        cache.store("key", outputs(output));
+        assertThat(output.delete(), is(true));
+
+        assertThat(cache.restore("key", outputs(output)), is(true));
+
+        File[] objects = new File(cache.getDirectory(), "objects").listFiles();
+        assertThat(objects.length, is(1));
+        assertThat(Files.isSameFile(output.toPath(), objects[0].toPath()), is(true));
+    }
+
+    @Test
+    public void restoreNeverCopiesStoredOutputsOntoOtherOutputs() throws Exception {
+        OutputCache cache = new OutputCache(temporaryFolder.newFolder("cache"));
+        File output = temporaryFolder.newFile("output.txt");
+        File declared = new File(temporaryFolder.getRoot(), "declared.txt");
+        Files.write(output.toPath(), new byte[] {1, 2, 3});
+        cache.store("key", outputs(output));
+        assertThat(output.delete(), is(true));
+
+        Map<String, File> outputs = new LinkedHashMap<>();
+        outputs.put("../declared.txt", declared);
+        outputs.put("../output.txt", output);
+        assertThat(cache.restore("key", outputs), is(true));
+        assertThat(declared.exists(), is(false));
+        assertThat(Files.readAllBytes(output.toPath()), is(new byte[] {1, 2, 3}));
+
+        assertThat(cache.restore("key", Collections.singletonMap("../declared.txt", declared)), is(false));
+        assertThat(declared.exists(), is(false));
+    }
+
+    @Test
+    public void corruptManifestsAreMissesAndNeverFailEviction() throws Exception {
+        OutputCache cache = new OutputCache(temporaryFolder.newFolder("cache")).maxSize(10);
+        File output = temporaryFolder.newFile("output.txt");
+        Files.write(output.toPath(), new byte[6]);
+        cache.store("good", outputs(output));
+        File entries = new File(cache.getDirectory(), "entries");
+        Files.write(new File(entries, "truncated").toPath(),
+            "mojo-executor-output-cache 2\nF\t../output.txt\t\tabc\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(entries, "edited").toPath(),
+            "mojo-executor-output-cache 2\nF\t../output.txt\t\tabc\tsix\n".getBytes(StandardCharsets.UTF_8));
+
+        cache.store("good", outputs(output));
+
+        assertThat(cache.restore("truncated", outputs(output)), is(false));
+        assertThat(cache.restore("edited", outputs(output)), is(false));
+        assertThat(cache.restore("good", outputs(output)), is(true));
+    }
+
+    private static Map<String, File> outputs(File output) {
+        return Collections.singletonMap("../" + output.getName(), output);
+    }
+}
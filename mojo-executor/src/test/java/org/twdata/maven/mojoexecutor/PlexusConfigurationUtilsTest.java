@@ -0,0 +1,65 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.codehaus.plexus.configuration.xml.XmlPlexusConfiguration;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.attribute;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.configuration;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.element;
+
+public class PlexusConfigurationUtilsTest {
+    @Test
+    public void toXpp3DomConvertsDeepConfigurationsWithoutRecursion() {
+        XmlPlexusConfiguration root = new XmlPlexusConfiguration("configuration");
+        XmlPlexusConfiguration parent = root;
+        for (int i = 0; i < 100000; i++) {
+            XmlPlexusConfiguration child = new XmlPlexusConfiguration("nested");
+            parent.addChild(child);
+            parent = child;
+        }
+        parent.setValue("bottom");
+
+        Xpp3Dom dom = PlexusConfigurationUtils.toXpp3Dom(root);
+        int depth = 0;
+        while (dom.getChildCount() > 0) {
+            dom = dom.getChild(0);
+            depth++;
+        }
+        assertThat(depth, is(100000));
+        assertThat(dom.getValue(), is("bottom"));
+    }
+
+    @Test
+    public void conversionsMatchTheElementDsl() {
+        Xpp3Dom expected = configuration(
+            element("outputDirectory", "target/classes"),
+            element("includes", element("include", "**/*.java"), element("include", "**/*.kt")),
+            element("artifactItem", attribute("implementation", "ArtifactItem"), element("artifactId", "junit"))
+        );
+        XmlPlexusConfiguration config = new XmlPlexusConfiguration(expected);
+
+        assertThat(PlexusConfigurationUtils.toXpp3Dom(config), is(expected));
+        assertThat(PlexusConfigurationUtils.asXpp3Dom(config), is(expected));
+        assertThat(expected, is(PlexusConfigurationUtils.asXpp3Dom(config)));
+        assertThat(PlexusConfigurationUtils.asXpp3Dom(config).hashCode(), is(expected.hashCode()));
+        assertThat(PlexusConfigurationUtils.asXpp3Dom(config).toString(), is(expected.toString()));
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.plugin.logging.Log;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ThreadOutputTest {
+    private final ByteArrayOutputStream console = new ByteArrayOutputStream();
+    private PrintStream systemOut;
+
+    @Before
+    public void replaceSystemOut() {
+        systemOut = System.out;
+        System.setOut(new PrintStream(console, true));
+    }
+
+    @After
+    public void restoreSystemOut() {
+        System.setOut(systemOut);
+    }
+
+    @Test
+    public void suppressOnlyAffectsTheCurrentThreadWhileOpen() throws Exception {
+        PrintStream out = System.out;
+        ExecutorService unrelated = Executors.newSingleThreadExecutor();
+        try {
+            // threads started before the scope is opened are not affected by it
+            unrelated.submit(() -> { }).get();
+            try (ThreadOutput.Scope ignored = ThreadOutput.suppress()) {
+                System.out.println("suppressed");
+                System.out.printf("suppressed %s%n", "too");
+                Thread started = new Thread(() -> System.out.println("started in scope"));
+                started.start();
+                started.join();
+                unrelated.submit(() -> System.out.println("unrelated thread")).get();
+            }
+        } finally {
+            unrelated.shutdown();
+        }
+        System.out.println("restored");
+
+        assertThat(System.out, sameInstance(out));
+        assertThat(console.toString().replace("\r", ""), is("unrelated thread\nrestored\n"));
+    }
+
+    @Test
+    public void suppressibleLogsDisableAllLevelsOfSuppressedThreads() {
+        Log log = mock(Log.class);
+        when(log.isInfoEnabled()).thenReturn(true);
+        Log suppressible = ThreadOutput.suppressible(log);
+
+        try (ThreadOutput.Scope ignored = ThreadOutput.suppress()) {
+            assertThat(ThreadOutput.isSuppressed(), is(true));
+            assertThat(suppressible.isInfoEnabled(), is(false));
+            suppressible.info("suppressed");
+            suppressible.error("suppressed", new IllegalStateException());
+        }
+        try (ThreadOutput.Scope ignored = ThreadOutput.redirect(new ByteArrayOutputStream())) {
+            assertThat(ThreadOutput.isSuppressed(), is(false));
+            assertThat(suppressible.isInfoEnabled(), is(true));
+        }
+        suppressible.info("logged");
+
+        verify(log, never()).info("suppressed");
+        verify(log, never()).error(anyString(), any(Throwable.class));
+        verify(log).info("logged");
+        assertThat(ThreadOutput.suppressible(suppressible), sameInstance(suppressible));
+    }
+}
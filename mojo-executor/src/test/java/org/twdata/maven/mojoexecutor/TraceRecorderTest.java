@@ -0,0 +1,82 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.execution.MavenSession;
+import org.eclipse.aether.RepositorySystemSession;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Properties;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TraceRecorderTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void sessionsWithoutRecordingReadTheirPropertiesOnce() throws Exception {
+        MavenSession session = session(new Properties());
+        try {
+            assertThat(TraceRecorder.forSession(session), is(nullValue()));
+            assertThat(TraceRecorder.forSession(session), is(nullValue()));
+            verify(session, times(1)).getUserProperties();
+
+            TraceRecorder started = TraceRecorder.start(session, temporaryFolder.newFile("trace.json"));
+            assertThat(TraceRecorder.forSession(session), sameInstance(started));
+        } finally {
+            TraceRecorder.close(session);
+        }
+    }
+
+    @Test
+    public void sessionsLookUpTheirOwnRecorders() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(TraceRecorder.PROPERTY, new File(temporaryFolder.getRoot(), "trace.json").getPath());
+        MavenSession traced = session(properties);
+        MavenSession untraced = session(new Properties());
+        try {
+            TraceRecorder recorder = TraceRecorder.forSession(traced);
+            assertThat(recorder.getFile(), is(new File(temporaryFolder.getRoot(), "trace.json")));
+            assertThat(TraceRecorder.forSession(untraced), is(nullValue()));
+            assertThat(TraceRecorder.forSession(traced), sameInstance(recorder));
+
+            assertThat(TraceRecorder.close(traced), sameInstance(recorder));
+            properties.clear();
+            assertThat(TraceRecorder.forSession(traced), is(nullValue()));
+        } finally {
+            TraceRecorder.close(traced);
+            TraceRecorder.close(untraced);
+        }
+    }
+
+    private static MavenSession session(Properties userProperties) {
+        MavenSession session = mock(MavenSession.class);
+        when(session.getRepositorySession()).thenReturn(mock(RepositorySystemSession.class));
+        when(session.getUserProperties()).thenReturn(userProperties);
+        return session;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2008-2013 Don Brown
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.twdata.maven.mojoexecutor;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Plugin;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.configuration;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.element;
+
+public class UpToDateCheckTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final Xpp3Dom configuration = configuration(element("outputDirectory", "target/generated"));
+
+    @Test
+    public void fingerprintCoversThePluginDependencies() throws Exception {
+        UpToDateCheck check = check(temporaryFolder.getRoot());
+        Plugin plugin = plugin();
+        String before = check.fingerprint(plugin, "generate", "default", configuration);
+
+        plugin.getDependencies().get(0).setVersion("2.0");
+
+        assertThat(check.fingerprint(plugin, "generate", "default", configuration), is(not(before)));
+    }
+
+    @Test
+    public void fingerprintCoversTheDeclaredOutputs() throws Exception {
+        File workspace = temporaryFolder.getRoot();
+        UpToDateCheck check = check(workspace);
+        String before = check.fingerprint(plugin(), "generate", "default", configuration);
+
+        check.outputs(new File(workspace, "target/generated-resources"));
+
+        assertThat(check.fingerprint(plugin(), "generate", "default", configuration), is(not(before)));
+    }
+
+    @Test
+    public void fingerprintDoesNotDependOnTheWorkspace() throws Exception {
+        String first = check(temporaryFolder.newFolder("first")).fingerprint(plugin(), "generate", "default",
+            configuration);
+        String second = check(temporaryFolder.newFolder("second")).fingerprint(plugin(), "generate", "default",
+            configuration);
+
+        assertThat(second, is(first));
+    }
+
+    private static UpToDateCheck check(File workspace) {
+        return new UpToDateCheck(new File(workspace, "target/mojo-executor"))
+            .outputs(new File(workspace, "target/generated"));
+    }
+
+    private static Plugin plugin() {
+        Dependency dependency = new Dependency();
+        dependency.setGroupId("org.example");
+        dependency.setArtifactId("generator-templates");
+        dependency.setVersion("1.0");
+        Plugin plugin = new Plugin();
+        plugin.setGroupId("org.example");
+        plugin.setArtifactId("generator-maven-plugin");
+        plugin.setVersion("1.0");
+        plugin.addDependency(dependency);
+        return plugin;
+    }
+}